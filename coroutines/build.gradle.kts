@@ -0,0 +1,102 @@
+plugins {
+    id("java-library")
+    kotlin("jvm") version "1.9.22"
+    id("com.vanniktech.maven.publish")
+}
+
+group = "io.github.robertomike"
+version = "3.0.0"
+
+repositories {
+    mavenCentral()
+}
+
+val jdkCompileVersion = 17
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(jdkCompileVersion))
+    }
+}
+
+kotlin {
+    jvmToolchain(jdkCompileVersion)
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile> {
+    kotlinOptions {
+        jvmTarget = jdkCompileVersion.toString()
+    }
+}
+
+dependencies {
+    implementation(project(":hefesto-base"))
+    api(project(":hefesto-base"))
+
+    api("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.7.3")
+
+    compileOnly("jakarta.persistence:jakarta.persistence-api:3.1.0")
+
+    implementation(kotlin("stdlib"))
+
+    testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.1")
+    testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.8.1")
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
+mavenPublishing {
+    publishToMavenCentral(com.vanniktech.maven.publish.SonatypeHost.CENTRAL_PORTAL, automaticRelease = true)
+    
+    // Only sign if credentials are available (CI environment)
+    if (project.hasProperty("signing.keyId")) {
+        signAllPublications()
+    }
+    
+    coordinates(
+        groupId = project.group.toString(),
+        artifactId = "hefesto-coroutines",
+        version = project.version.toString()
+    )
+    
+    pom {
+        name.set("HefestoSql - Coroutines")
+        description.set("HefestoSql Kotlin coroutines support - suspend execution and Flow streaming for the HefestoSql builders")
+        url.set("https://github.com/RobertoMike/HefestoSql")
+        inceptionYear.set("2026")
+        
+        licenses {
+            license {
+                name.set("MIT License")
+                url.set("https://opensource.org/licenses/MIT")
+            }
+        }
+        
+        developers {
+            developer {
+                id.set("robertomike")
+                name.set("Roberto Micheletti")
+                email.set("rmworking@hotmail.com")
+                url.set("https://github.com/RobertoMike")
+            }
+        }
+        
+        scm {
+            connection.set("scm:git:git://github.com/RobertoMike/HefestoSql.git")
+            developerConnection.set("scm:git:ssh://git@github.com/RobertoMike/HefestoSql.git")
+            url.set("https://github.com/RobertoMike/HefestoSql")
+        }
+    }
+}
+
+tasks.register("printVersion") {
+    doLast {
+        println(project.version)
+    }
+}
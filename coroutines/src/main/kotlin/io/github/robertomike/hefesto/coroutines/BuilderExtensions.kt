@@ -0,0 +1,115 @@
+package io.github.robertomike.hefesto.coroutines
+
+import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.utils.Page
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.withContext
+import java.util.*
+
+/**
+ * Any builder of the model, independent of the implementation
+ */
+typealias Builder<Model> = BaseBuilder<Model, *, *, *, *, *, *, *>
+
+/**
+ * Suspending version of [BaseBuilder.get].
+ * The query runs in the dispatcher with the session of the async executions.
+ *
+ * ```kotlin
+ * val users = Hefesto.make(User::class.java)
+ *     .where(User::status, Status.ACTIVE)
+ *     .awaitGet()
+ * ```
+ *
+ * @param dispatcher the dispatcher where the query is executed
+ * @return a list of Model objects
+ */
+suspend fun <Model : BaseModel> Builder<Model>.awaitGet(
+    dispatcher: CoroutineDispatcher = HefestoCoroutines.dispatcher
+): List<Model> {
+    return execute(dispatcher) { get() }
+}
+
+/**
+ * Suspending version of [BaseBuilder.findFirst].
+ *
+ * @param dispatcher the dispatcher where the query is executed
+ * @return an Optional containing the first model, or an empty Optional if no model is found
+ */
+suspend fun <Model : BaseModel> Builder<Model>.awaitFindFirst(
+    dispatcher: CoroutineDispatcher = HefestoCoroutines.dispatcher
+): Optional<Model> {
+    return execute(dispatcher) { findFirst() }
+}
+
+/**
+ * Suspending version of [BaseBuilder.page].
+ *
+ * @param limit the maximum number of items to be returned
+ * @param offset the starting position of the items to be returned
+ * @param dispatcher the dispatcher where the query is executed
+ * @return a Page object containing the requested items
+ */
+suspend fun <Model : BaseModel> Builder<Model>.awaitPage(
+    limit: Int,
+    offset: Long = 0L,
+    dispatcher: CoroutineDispatcher = HefestoCoroutines.dispatcher
+): Page<Model> {
+    return execute(dispatcher) { page(limit, offset) }
+}
+
+/**
+ * Suspending version of [BaseBuilder.countResults].
+ *
+ * @param dispatcher the dispatcher where the query is executed
+ * @return the number of results
+ */
+suspend fun <Model : BaseModel> Builder<Model>.awaitCountResults(
+    dispatcher: CoroutineDispatcher = HefestoCoroutines.dispatcher
+): Long {
+    return execute(dispatcher) { countResults() }
+}
+
+/**
+ * Emits the results of the query as a cold [Flow] backed by [BaseBuilder.stream].
+ * The rows are read from the forward only cursor only when the collector asks for them,
+ * so a slow collector never forces the whole result into memory.
+ * The cursor and the session are released when the collection finishes or is cancelled.
+ *
+ * ```kotlin
+ * Hefesto.make(User::class.java)
+ *     .fetchSize(500)
+ *     .asFlow()
+ *     .collect { user -> process(user) }
+ * ```
+ *
+ * @param dispatcher the dispatcher where the rows are read
+ * @return a flow with the results
+ */
+fun <Model : BaseModel> Builder<Model>.asFlow(
+    dispatcher: CoroutineDispatcher = HefestoCoroutines.dispatcher
+): Flow<Model> {
+    val builder = this
+    val provider = resolveAsyncSessionProvider()
+
+    return flow {
+        builder.withSessionProvider(provider) { builder.stream() }.use { stream ->
+            val rows = stream.iterator()
+            while (rows.hasNext()) {
+                emit(rows.next())
+            }
+        }
+    }.flowOn(dispatcher)
+}
+
+/**
+ * Runs the blocking execution in the dispatcher, resolving the sessions like the async executions do.
+ */
+private suspend fun <R> Builder<*>.execute(dispatcher: CoroutineDispatcher, block: () -> R): R {
+    val provider = resolveAsyncSessionProvider()
+    return withContext(dispatcher) { withSessionProvider(provider, block) }
+}
@@ -0,0 +1,16 @@
+package io.github.robertomike.hefesto.coroutines
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+
+/**
+ * Global configuration for the coroutine extensions.
+ */
+object HefestoCoroutines {
+    /**
+     * The dispatcher where the blocking queries are executed, [Dispatchers.IO] by default
+     */
+    @Volatile
+    @JvmStatic
+    var dispatcher: CoroutineDispatcher = Dispatchers.IO
+}
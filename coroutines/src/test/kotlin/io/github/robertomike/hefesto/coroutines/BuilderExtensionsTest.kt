@@ -0,0 +1,171 @@
+package io.github.robertomike.hefesto.coroutines
+
+import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.constructors.ConstructGroupBy
+import io.github.robertomike.hefesto.constructors.ConstructJoin
+import io.github.robertomike.hefesto.constructors.ConstructOrder
+import io.github.robertomike.hefesto.constructors.ConstructSelect
+import io.github.robertomike.hefesto.constructors.ConstructWhere
+import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.sessions.SessionProvider
+import io.github.robertomike.hefesto.utils.Page
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.LongStream
+import java.util.stream.Stream
+
+/**
+ * Test class for the suspending extensions, with a builder that reads its rows from memory
+ * and a provider that counts the sessions handed out and released.
+ */
+class BuilderExtensionsTest {
+
+    @Test
+    fun `awaitGet runs the query with the async provider`() = runBlocking {
+        val builder = MemoryBuilder(3)
+
+        val rows = builder.awaitGet()
+
+        assertEquals(listOf(1L, 2L, 3L), rows.map { it.id })
+        assertNotEquals(Thread.currentThread(), builder.thread)
+        builder.provider.assertAllReleased(1)
+    }
+
+    @Test
+    fun `awaitFindFirst returns the first row`() = runBlocking {
+        val builder = MemoryBuilder(3)
+
+        assertEquals(1L, builder.awaitFindFirst().get().id)
+        assertFalse(MemoryBuilder(0).awaitFindFirst().isPresent)
+        builder.provider.assertAllReleased(1)
+    }
+
+    @Test
+    fun `awaitPage returns the rows and the total`() = runBlocking {
+        val builder = MemoryBuilder(5)
+
+        val page = builder.awaitPage(2, 2)
+
+        assertEquals(listOf(3L, 4L), page.data.map { it.id })
+        assertEquals(2L, page.page)
+        assertEquals(5L, page.total)
+        builder.provider.assertAllReleased(1)
+    }
+
+    @Test
+    fun `awaitCountResults returns the total`() = runBlocking {
+        val builder = MemoryBuilder(4)
+
+        assertEquals(4L, builder.awaitCountResults())
+        builder.provider.assertAllReleased(1)
+    }
+
+    @Test
+    fun `asFlow emits every row and closes the stream`() = runBlocking {
+        val builder = MemoryBuilder(3)
+
+        val rows = builder.asFlow().toList()
+
+        assertEquals(listOf(1L, 2L, 3L), rows.map { it.id })
+        assertTrue(builder.streamClosed.get())
+        builder.provider.assertAllReleased(1)
+    }
+
+    @Test
+    fun `asFlow closes the stream and the session when it's cancelled`() = runBlocking {
+        val builder = MemoryBuilder(100_000)
+        val received = AtomicInteger()
+
+        val job = launch {
+            builder.asFlow(Dispatchers.Default).collect {
+                if (received.incrementAndGet() == 2) {
+                    cancel()
+                }
+            }
+        }
+        job.join()
+
+        assertTrue(job.isCancelled)
+        assertTrue(received.get() < 100_000)
+        assertTrue(builder.streamClosed.get())
+        builder.provider.assertAllReleased(1)
+    }
+
+    class Row(val id: Long) : BaseModel {
+        override fun getTable(): String = "rows"
+    }
+
+    class CountingProvider : SessionProvider<Any> {
+        val opened = AtomicInteger()
+        val released = AtomicInteger()
+
+        override fun getSession(): Any {
+            opened.incrementAndGet()
+            return Any()
+        }
+
+        override fun releaseSession(session: Any) {
+            released.incrementAndGet()
+        }
+
+        fun assertAllReleased(expected: Int) {
+            assertEquals(expected, opened.get())
+            assertEquals(expected, released.get())
+        }
+    }
+
+    class Wheres : ConstructWhere()
+    class Joins : ConstructJoin()
+    class Orders : ConstructOrder()
+    class Selects : ConstructSelect()
+    class Groups : ConstructGroupBy()
+
+    /**
+     * Builder that returns the rows with the ids from 1 to the total, every execution asks the provider for a session.
+     */
+    class MemoryBuilder(private val total: Long) :
+        BaseBuilder<Row, Any, Wheres, Joins, Orders, Selects, Groups, MemoryBuilder>(Row::class.java) {
+        val provider = CountingProvider()
+        val streamClosed = AtomicBoolean()
+
+        @Volatile
+        var thread: Thread? = null
+
+        init {
+            wheres = Wheres()
+            joins = Joins()
+            orders = Orders()
+            selects = Selects()
+            groupBy = Groups()
+        }
+
+        override fun resolveAsyncSessionProvider(): SessionProvider<*> = provider
+
+        override fun get(): List<Row> = withSession {
+            thread = Thread.currentThread()
+            rows().toList()
+        }
+
+        override fun findFirst(): Optional<Row> = withSession { rows().findFirst() }
+
+        override fun page(limit: Int, offset: Long): Page<Row> = withSession {
+            Page(rows().skip(offset).limit(limit.toLong()).toList(), offset, total)
+        }
+
+        override fun countResults(): Long = withSession { total }
+
+        override fun stream(): Stream<Row> = streamWithSession {
+            rows().onClose { streamClosed.set(true) }
+        }
+
+        private fun rows(): Stream<Row> = LongStream.rangeClosed(1, total).mapToObj { Row(it) }
+    }
+}
@@ -62,6 +62,7 @@ dependencies {
     testAnnotationProcessor("org.projectlombok:lombok:1.18.30")
 
     testImplementation("mysql:mysql-connector-java:8.0.28")
+    testImplementation("com.h2database:h2:2.1.214")
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.1")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.8.1")
     testImplementation("org.junit.jupiter:junit-jupiter-params:5.10.0")
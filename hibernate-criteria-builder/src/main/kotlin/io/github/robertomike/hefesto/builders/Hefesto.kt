@@ -1,5 +1,7 @@
 package io.github.robertomike.hefesto.builders
 
+import io.github.robertomike.hefesto.actions.Select
+import io.github.robertomike.hefesto.actions.UpdateSet
 import io.github.robertomike.hefesto.actions.Join
 import io.github.robertomike.hefesto.actions.JoinFetch
 import io.github.robertomike.hefesto.actions.wheres.WhereCustom
@@ -10,16 +12,17 @@ import io.github.robertomike.hefesto.enums.Operator
 import io.github.robertomike.hefesto.enums.WhereOperator
 import io.github.robertomike.hefesto.models.BaseModel
 import io.github.robertomike.hefesto.utils.Page
-import io.github.robertomike.hefesto.utils.SharedMethods
+import jakarta.persistence.criteria.CommonAbstractCriteria
 import jakarta.persistence.criteria.CriteriaBuilder
-import jakarta.persistence.criteria.CriteriaQuery
 import jakarta.persistence.criteria.Root
 import jakarta.persistence.criteria.Subquery
+import org.hibernate.SharedSessionContract
+import org.hibernate.query.Query
 import java.util.*
+import java.util.stream.Stream
 
 class Hefesto<T : BaseModel>(model: Class<T>) :
-    BaseBuilder<T, org.hibernate.Session, ConstructWhereImplementation, ConstructJoinImplementation<T>, ConstructOrderImplementation, ConstructSelectImplementation<T>, ConstructGroupByImplementation, Hefesto<T>>(model),
-    SharedMethods<Hefesto<T>> {
+    HibernateBuilder<T, ConstructWhereImplementation, ConstructJoinImplementation<T>, ConstructOrderImplementation, ConstructSelectImplementation<T>, ConstructGroupByImplementation, Hefesto<T>>(model) {
 
     override val joinsFetch = ConstructJoinFetch()
     private var originalModel: Class<*>? = null
@@ -27,7 +30,7 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
     
     // Internal executor - separates building from execution
     private val executor: HefestoExecutor<T> by lazy {
-        HefestoExecutor(model, originalModel, customResultSubQuery)
+        HefestoExecutor(model, originalModel, customResultSubQuery, queryOptions)
     }
 
     init {
@@ -261,7 +264,7 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
      * or an empty Optional if the result set is empty.
      */
     override fun findFirst(): Optional<T> {
-        return executor.findFirst(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy)
+        return execute { executor.findFirst(it, selects, wheres, joins, joinsFetch, orders, groupBy) }
     }
 
     /**
@@ -270,7 +273,17 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
      * @return a list of objects
      */
     override fun get(): List<T> {
-        return executor.get(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset)
+        return execute { executor.get(it, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset) }
+    }
+
+    /**
+     * Retrieves the results as a stream backed by a forward only cursor (`ScrollMode.FORWARD_ONLY`).
+     * The session is released when the stream is closed.
+     *
+     * @return a stream of objects, it must be closed
+     */
+    override fun stream(): Stream<T> {
+        return executeStream { executor.stream(it, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset) }
     }
 
     /**
@@ -281,7 +294,23 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
      * @return a Page object containing the retrieved results, the offset used, and the total number of results
      */
     override fun page(limit: Int, offset: Long): Page<T> {
-        return executor.page(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset)
+        val key = countCacheKey(queriedModel)
+
+        return execute { session ->
+            executor.page(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset) {
+                cachedCount(key) { executor.countResults(session, wheres, joins, groupBy) }
+            }
+        }
+    }
+
+    /**
+     * Checks if the query has results with a `select 1` limited to one row,
+     * so the database stops at the first match instead of counting all the rows.
+     *
+     * @return true if exists
+     */
+    override fun exist(): Boolean {
+        return execute { executor.exists(it, wheres, joins) }
     }
 
     /**
@@ -290,20 +319,61 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
      * @return the count of results as a Long value
      */
     override fun countResults(): Long {
-        return executor.countResults(getSessionInstance(), wheres, joins, groupBy)
+        return cachedCount(countCacheKey(queriedModel)) {
+            execute { executor.countResults(it, wheres, joins, groupBy) }
+        }
+    }
+
+    override val queriedModel: Class<*>
+        get() = originalModel ?: model
+
+    override fun isEntityQuery(): Boolean {
+        return originalModel == null && selects.isEmpty()
+    }
+
+    override fun list(session: SharedSessionContract, limit: Int?, offset: Int?): List<T> {
+        return executor.get(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset)
+    }
+
+    override fun prepareCount(session: SharedSessionContract): (SharedSessionContract) -> Long {
+        val countCriteria = executor.createCountCriteria(session.criteriaBuilder, wheres, joins, groupBy)
+        return { executor.countResults(it, countCriteria) }
+    }
+
+    override fun updateQuery(session: SharedSessionContract, set: UpdateSet): Query<*> {
+        return executor.updateQuery(session, wheres, set)
+    }
+
+    override fun deleteQuery(session: SharedSessionContract): Query<*> {
+        return executor.deleteQuery(session, wheres)
+    }
+
+    override fun chunkIdsQuery(session: SharedSessionContract, size: Int, lastId: Any?): Query<*> {
+        return executor.chunkIdsQuery(session, wheres, joins, size, lastId)
+    }
+
+    override fun deleteByIdsQuery(session: SharedSessionContract, ids: List<*>): Query<*> {
+        return executor.deleteByIdsQuery(session, ids)
+    }
+
+    override fun pluckRows(session: SharedSessionContract, fields: List<String>): List<Any?> {
+        val pluckSelects = ConstructSelectImplementation<T>()
+        fields.forEach { pluckSelects.add(Select(it)) }
+
+        return executor.pluck(session, pluckSelects, wheres, joins, orders, groupBy, limit, offset)
     }
 
     /**
      * Generates a sub-query for the given criteria query, root, criteria builder, and joins.
      *
-     * @param cr          the criteria query
+     * @param cr          the criteria query, or the update and delete statement
      * @param parentRoot  the parent root
      * @param cb          the criteria builder
      * @param parentJoins the joins
      * @return the generated subquery
      */
     fun getSubQuery(
-        cr: CriteriaQuery<*>,
+        cr: CommonAbstractCriteria,
         parentRoot: Root<*>,
         cb: CriteriaBuilder,
         parentJoins: Map<String, jakarta.persistence.criteria.Join<*, *>>
@@ -327,7 +397,7 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
      * @return the first result of the specified class, or null if no result is found
      */
     fun <R> findFirstFor(resultClass: Class<R>): R {
-        return executor.findFirstFor(getSessionInstance(), resultClass, selects, wheres, joins, orders, groupBy, offset)
+        return execute { executor.findFirstFor(it, resultClass, selects, wheres, joins, orders, groupBy, offset) }
     }
 
     /**
@@ -337,7 +407,7 @@ class Hefesto<T : BaseModel>(model: Class<T>) :
      * @return a list of objects of the specified resultClass
      */
     fun <R> findFor(resultClass: Class<R>): List<R> {
-        return executor.findFor(getSessionInstance(), resultClass, selects, wheres, joins, orders, groupBy, limit, offset)
+        return execute { executor.findFor(it, resultClass, selects, wheres, joins, orders, groupBy, limit, offset) }
     }
 
     // ========== HELPER METHODS ==========
@@ -1,16 +1,31 @@
 package io.github.robertomike.hefesto.builders
 
+import io.github.robertomike.hefesto.actions.UpdateSet
+import io.github.robertomike.hefesto.actions.wheres.Where
 import io.github.robertomike.hefesto.constructors.*
+import io.github.robertomike.hefesto.enums.Operator
 import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.utils.BatchLoader
+import io.github.robertomike.hefesto.utils.CountPlanner
+import io.github.robertomike.hefesto.utils.FetchPlanner
+import io.github.robertomike.hefesto.utils.FetchUtils
+import io.github.robertomike.hefesto.utils.HefestoFunctions
 import io.github.robertomike.hefesto.utils.Page
+import io.github.robertomike.hefesto.utils.QueryOptions
+import io.github.robertomike.hefesto.utils.ScrollUtils
 import org.hibernate.QueryException
-import org.hibernate.Session
+import org.hibernate.SharedSessionContract
 import org.hibernate.query.Query
+import jakarta.persistence.criteria.CommonAbstractCriteria
 import jakarta.persistence.criteria.CriteriaBuilder
 import jakarta.persistence.criteria.CriteriaQuery
+import jakarta.persistence.criteria.Expression
+import jakarta.persistence.criteria.Predicate
+import jakarta.persistence.metamodel.ManagedType
 import jakarta.persistence.criteria.Root
 import jakarta.persistence.criteria.Subquery
 import java.util.*
+import java.util.stream.Stream
 
 /**
  * Internal executor class responsible for query construction and execution.
@@ -24,7 +39,8 @@ import java.util.*
 internal class HefestoExecutor<T : BaseModel>(
     private val model: Class<T>,
     private val originalModel: Class<*>?,
-    private val customResultSubQuery: Class<*>?
+    private val customResultSubQuery: Class<*>?,
+    private val queryOptions: QueryOptions
 ) {
     
     /**
@@ -32,9 +48,8 @@ internal class HefestoExecutor<T : BaseModel>(
      *
      * @return The created query.
      */
-    @Suppress("UNCHECKED_CAST")
     fun createQuery(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation<T>,
@@ -44,7 +59,38 @@ internal class HefestoExecutor<T : BaseModel>(
         limit: Int?,
         offset: Int?
     ): Query<T> {
-        val cb = session.criteriaBuilder
+        val cr = createCriteria(session.criteriaBuilder, selects, wheres, joins, joinsFetch, orders, groupBy)
+        val query = queryOptions.apply(session.createQuery(cr))
+        if (selects.isEmpty() && originalModel == null) {
+            queryOptions.applyGraph(session, query)
+        }
+
+        if (limit != null) {
+            query.maxResults = limit
+        }
+        if (offset != null) {
+            query.firstResult = offset
+        }
+
+        return query
+    }
+
+    /**
+     * Creates the criteria query for the given components.
+     * The criteria query is not bound to a session, it can be executed in any session of the same factory.
+     *
+     * @return The created criteria query.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun createCriteria(
+        cb: CriteriaBuilder,
+        selects: ConstructSelectImplementation<T>,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation
+    ): CriteriaQuery<T> {
         val cr = cb.createQuery(model)
         val root = getRoot(cr)
 
@@ -61,16 +107,7 @@ internal class HefestoExecutor<T : BaseModel>(
         orders.setJoins(joins.joins).construct(cb, cr, root)
         groupBy.construct(cr, root)
 
-        val query = session.createQuery(cr)
-
-        if (limit != null) {
-            query.maxResults = limit
-        }
-        if (offset != null) {
-            query.firstResult = offset
-        }
-
-        return query
+        return cr
     }
 
     /**
@@ -90,14 +127,14 @@ internal class HefestoExecutor<T : BaseModel>(
     /**
      * Generates a sub-query for the given criteria query, root, criteria builder, and joins.
      *
-     * @param cr          the criteria query
+     * @param cr          the criteria query, or the update and delete statement
      * @param parentRoot  the parent root
      * @param cb          the criteria builder
      * @param parentJoins the joins
      * @return the generated subquery
      */
     fun createSubQuery(
-        cr: CriteriaQuery<*>,
+        cr: CommonAbstractCriteria,
         parentRoot: Root<*>,
         cb: CriteriaBuilder,
         parentJoins: Map<String, jakarta.persistence.criteria.Join<*, *>>,
@@ -118,7 +155,9 @@ internal class HefestoExecutor<T : BaseModel>(
         allJoins.putAll(joins.joins)
         wheres.setJoins(allJoins).setJoinConditions(joins.joinConditions).constructSubQuery(sub, cb, root, parentRoot)
         selects.setJoins(allJoins).constructSubQuery(root, sub)
-        groupBy.construct(cr, root)
+        if (cr is CriteriaQuery<*>) {
+            groupBy.construct(cr, root)
+        }
 
         // Note: Hibernate Criteria API's Subquery doesn't support setMaxResults/setFirstResult
         // Limits in subqueries are typically handled at the SQL level
@@ -134,7 +173,62 @@ internal class HefestoExecutor<T : BaseModel>(
      * @return a list of objects
      */
     fun get(
-        session: Session,
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation<T>,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?
+    ): List<T> {
+        return list(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset)
+    }
+
+    /**
+     * Executes the query, when a collection is fetched and the results are limited
+     * the ids are loaded first so the pagination is done by the database instead of in memory.
+     * The relationships of `withPlanned` are planned and the ones of `withBatch` are loaded after the query.
+     *
+     * @return a list of objects
+     */
+    private fun list(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation<T>,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?
+    ): List<T> {
+        if (selects.isNotEmpty() || originalModel != null) {
+            return fetchList(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset)
+        }
+
+        var fetches = joinsFetch
+        var batchFetches: List<String> = queryOptions.batchFetches
+        if (queryOptions.plannedFetches.isNotEmpty()) {
+            val entity = FetchUtils.factoryOf(session).metamodel.entity(model)
+            val plan = FetchPlanner.plan(entity, queryOptions.plannedFetches, joinsFetch)
+            queryOptions.fetchPlan = plan
+
+            fetches = ConstructJoinFetch()
+            fetches.addAll(joinsFetch)
+            fetches.addAll(plan.joinFetches)
+            batchFetches = batchFetches + plan.batchFetches
+        }
+
+        val results = fetchList(session, selects, wheres, joins, fetches, orders, groupBy, limit, offset)
+        BatchLoader.load(session, results, batchFetches, queryOptions)
+
+        return results
+    }
+
+    private fun fetchList(
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation<T>,
@@ -144,9 +238,100 @@ internal class HefestoExecutor<T : BaseModel>(
         limit: Int?,
         offset: Int?
     ): List<T> {
+        val limited = limit != null || offset != null
+        if (limited && joinsFetch.isNotEmpty() && selects.isEmpty() && originalModel == null && groupBy.isEmpty()) {
+            val entity = FetchUtils.factoryOf(session).metamodel.entity(model)
+            val idName = FetchUtils.idName(entity)
+
+            if (idName != null && FetchUtils.hasCollectionFetch(entity, joinsFetch)) {
+                return listByIds(session, entity, idName, wheres, joins, joinsFetch, orders, limit, offset)
+            }
+        }
+
         return createQuery(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset).resultList
     }
 
+    /**
+     * Loads the limited ids with the filters and orders of the query,
+     * then loads the entities with the fetches and returns them in the order of the ids.
+     * The ids are grouped in the database, so the to-many joins don't repeat them and the limit counts ids.
+     * The inner fetches of the root are replaced by `is not empty` and `is not null` conditions in the first query,
+     * so they filter the rows without duplicating the ids.
+     *
+     * @return a list of objects
+     */
+    private fun listByIds(
+        session: SharedSessionContract,
+        entity: ManagedType<*>,
+        idName: String,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        limit: Int?,
+        offset: Int?
+    ): List<T> {
+        val cb = session.criteriaBuilder
+        val idCriteria = cb.createQuery(Any::class.java)
+        val root = idCriteria.from(model)
+
+        val id = root.get<Any>(idName)
+
+        joins.construct(root)
+        idCriteria.select(id)
+        wheres.setJoins(joins.joins).setJoinConditions(joins.joinConditions).construct(cb, idCriteria, root)
+        orders.setJoins(joins.joins).constructGroupedById(cb, idCriteria, root, id)
+
+        val restrictions = listOfNotNull<Predicate>(idCriteria.restriction) + FetchUtils.innerFetches(entity, joinsFetch).map {
+            if (it.isCollection) cb.isNotEmpty(root.get<Collection<*>>(it.name)) else cb.isNotNull(root.get<Any>(it.name))
+        }
+        idCriteria.where(*restrictions.toTypedArray())
+
+        val idQuery = queryOptions.apply(session.createQuery(idCriteria))
+        if (limit != null) {
+            idQuery.maxResults = limit
+        }
+        if (offset != null) {
+            idQuery.firstResult = offset
+        }
+
+        val ids = idQuery.resultList
+        if (ids.isEmpty()) {
+            return emptyList()
+        }
+
+        val idWheres = ConstructWhereImplementation()
+        idWheres.add(Where(idName, Operator.IN, ids))
+        val cr = createCriteria(
+            cb, ConstructSelectImplementation(), idWheres, ConstructJoinImplementation(),
+            joinsFetch, ConstructOrderImplementation(), ConstructGroupByImplementation()
+        )
+
+        val query = queryOptions.applyGraph(session, queryOptions.apply(session.createQuery(cr)))
+
+        return FetchUtils.sortByIds(query.resultList, ids, FetchUtils.factoryOf(session))
+    }
+
+    /**
+     * Retrieves the results as a stream backed by a forward only cursor.
+     *
+     * @return a stream of objects, it must be closed
+     */
+    fun stream(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation<T>,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?
+    ): Stream<T> {
+        val query = createQuery(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset)
+        return ScrollUtils.stream(query, session, queryOptions.clearEvery)
+    }
+
     /**
      * Returns an Optional containing the first element of the result set,
      * or an empty Optional if the result set is empty.
@@ -155,7 +340,7 @@ internal class HefestoExecutor<T : BaseModel>(
      * or an empty Optional if the result set is empty.
      */
     fun findFirst(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation<T>,
@@ -164,7 +349,7 @@ internal class HefestoExecutor<T : BaseModel>(
         groupBy: ConstructGroupByImplementation
     ): Optional<T> {
         return Optional.ofNullable(
-            createQuery(session, selects, wheres, joins, joinsFetch, orders, groupBy, 1, null).singleResultOrNull
+            list(session, selects, wheres, joins, joinsFetch, orders, groupBy, 1, null).firstOrNull()
         )
     }
 
@@ -173,10 +358,11 @@ internal class HefestoExecutor<T : BaseModel>(
      *
      * @param limit  the maximum number of results to retrieve
      * @param offset the starting position of the results
+     * @param count executes the count query
      * @return a Page object containing the retrieved results, the offset used, and the total number of results
      */
     fun page(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation<T>,
@@ -184,38 +370,283 @@ internal class HefestoExecutor<T : BaseModel>(
         orders: ConstructOrderImplementation,
         groupBy: ConstructGroupByImplementation,
         limit: Int,
-        offset: Long
+        offset: Long,
+        count: () -> Long
     ): Page<T> {
-        val total = countResults(session, wheres, joins, groupBy)
-        val results = createQuery(
-            session, selects, wheres, joins, joinsFetch, orders, groupBy, 
-            limit, offset.toInt()
-        ).resultList
+        if (queryOptions.windowCount &&
+            selects.isEmpty() && originalModel == null && joinsFetch.isEmpty() && groupBy.isEmpty() &&
+            queryOptions.plannedFetches.isEmpty() && queryOptions.entityGraph == null && !duplicatesRows(session, wheres, joins)
+        ) {
+            return pageWithWindowCount(session, wheres, joins, orders, limit, offset, count)
+        }
+
+        val total = count()
+        val results = list(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset.toInt())
 
         return Page(results, offset, total)
     }
 
+    /**
+     * True when a join can duplicate the rows of the root, then `count(*) over()` would count the joined rows
+     * and the count query with distinct is used instead, see [CountPlanner].
+     */
+    private fun duplicatesRows(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>
+    ): Boolean {
+        if (joins.isEmpty()) {
+            return false
+        }
+        val entity = FetchUtils.factoryOf(session).metamodel.entity(model)
+        return CountPlanner.plan(entity, joins, wheres, emptyList()).distinct
+    }
+
+    /**
+     * Retrieves a page loading the total with `count(*) over()` in the same query.
+     * When the page is empty the total can't be read from the rows, so the count query is executed.
+     *
+     * @return a Page object containing the retrieved results, the offset used, and the total number of results
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun pageWithWindowCount(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        orders: ConstructOrderImplementation,
+        limit: Int,
+        offset: Long,
+        count: () -> Long
+    ): Page<T> {
+        val cb = session.criteriaBuilder
+        val cr = cb.createQuery(Array<Any>::class.java)
+        val root = cr.from(model)
+
+        joins.construct(root)
+        cr.multiselect(root, cb.function(HefestoFunctions.COUNT_OVER, Long::class.javaObjectType))
+        wheres.setJoins(joins.joins).setJoinConditions(joins.joinConditions).construct(cb, cr, root)
+        orders.setJoins(joins.joins).construct(cb, cr, root)
+
+        val query = queryOptions.apply(session.createQuery(cr))
+        query.maxResults = limit
+        query.firstResult = offset.toInt()
+
+        val rows = query.resultList
+        if (rows.isEmpty()) {
+            val total = if (offset == 0L) 0L else count()
+            return Page(emptyList(), offset, total)
+        }
+
+        val results = rows.map { it[0] as T }
+        BatchLoader.load(session, results, queryOptions)
+
+        return Page(results, offset, (rows[0][1] as Number).toLong())
+    }
+
     /**
      * Counts the number of results based on the given criteria.
      *
      * @return the count of results as a Long value
      */
     fun countResults(
-        session: Session,
+        session: SharedSessionContract,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation<T>,
         groupBy: ConstructGroupByImplementation
     ): Long {
-        val cb = session.criteriaBuilder
-        val cr = cb.createQuery(Long::class.java)
+        return countResults(session, createCountCriteria(session.criteriaBuilder, wheres, joins, groupBy))
+    }
+
+    /**
+     * Counts the number of results of an already created count criteria.
+     *
+     * @param cr the count criteria created with [createCountCriteria]
+     * @return the count of results as a Long value
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun countResults(session: SharedSessionContract, cr: CriteriaQuery<*>): Long {
+        val query = queryOptions.apply(session.createQuery(cr as CriteriaQuery<Any>))
+
+        return (query.singleResult as Number).toLong()
+    }
+
+    /**
+     * Creates the count criteria query for the given components.
+     * The criteria query is not bound to a session, it can be executed in any session of the same factory.
+     *
+     * Only the joins needed are applied, see [CountPlanner].
+     * The root is counted with distinct when a kept join can duplicate the rows.
+     *
+     * A query grouped by one field counts the distinct values of the field in the database, plus one when there is
+     * a group of nulls. A query grouped by several fields counts the rows whose id is the lowest of its group:
+     * ```sql
+     * select count(u) from User u where u.id in (select min(g.id) from User g where ... group by g.name, g.email)
+     * ```
+     *
+     * @return the count criteria query
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun createCountCriteria(
+        cb: CriteriaBuilder,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        groupBy: ConstructGroupByImplementation
+    ): CriteriaQuery<*> {
+        val cr = cb.createQuery(Any::class.java)
         val root = cr.from(model)
+        val plan = CountPlanner.plan(root.model, joins, wheres, groupBy)
+        val countJoins = ConstructJoinImplementation<T>()
+        countJoins.addAll(plan.joins)
 
-        cr.select(cb.count(root))
-        joins.construct(root)
-        wheres.setJoins(joins.joins).setJoinConditions(joins.joinConditions).construct(cb, cr, root)
-        groupBy.construct(cr, root)
+        if (groupBy.size > 1) {
+            val idName = FetchUtils.idName(root.model)
+                ?: throw QueryException("The count grouped by several fields needs a single id in ${model.simpleName}")
+            val groups = cr.subquery(Any::class.java)
+            val groupRoot = groups.from(model)
+
+            countJoins.construct(groupRoot)
+            wheres.setJoins(countJoins.joins).setJoinConditions(countJoins.joinConditions).construct(cb, groups, groupRoot)
+            groups.select(cb.least(groupRoot.get<Comparable<Any>>(idName)) as Expression<Any>)
+            groupBy.construct(groups, groupRoot)
+
+            cr.select(cb.count(root) as Expression<Any>)
+            cr.where(cb.`in`(root.get<Any>(idName)).value(groups))
+
+            return cr
+        }
 
-        return session.createQuery(cr).singleResult
+        countJoins.construct(root)
+        wheres.setJoins(countJoins.joins).setJoinConditions(countJoins.joinConditions).construct(cb, cr, root)
+
+        if (groupBy.size == 1) {
+            val group = root.get<Any>(groupBy[0].field)
+            val nullGroup = cb.selectCase<Long>()
+                .`when`(cb.greaterThan(cb.count(root), cb.count(group)), 1L)
+                .otherwise(0L)
+
+            cr.select(cb.sum(cb.countDistinct(group), nullGroup) as Expression<Any>)
+        } else {
+            cr.select((if (plan.distinct) cb.countDistinct(root) else cb.count(root)) as Expression<Any>)
+        }
+
+        return cr
+    }
+
+    /**
+     * Checks if the query has at least one result, selecting a constant with a limit of one row
+     * so the database stops at the first match. The group by doesn't change if a row exists, so it's ignored.
+     *
+     * @return true if a row exists
+     */
+    fun exists(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>
+    ): Boolean {
+        val cb = session.criteriaBuilder
+        val cr = cb.createQuery(Int::class.javaObjectType)
+        val root = cr.from(originalModel ?: model)
+        val plan = CountPlanner.plan(root.model, joins, wheres, emptyList())
+        val existsJoins = ConstructJoinImplementation<T>()
+        existsJoins.addAll(plan.joins)
+
+        existsJoins.construct(root)
+        wheres.setJoins(existsJoins.joins).setJoinConditions(existsJoins.joinConditions).construct(cb, cr, root)
+        cr.select(cb.literal(1))
+
+        val query = queryOptions.apply(session.createQuery(cr))
+        query.maxResults = 1
+
+        return query.resultList.isNotEmpty()
+    }
+
+    /**
+     * Creates the `CriteriaUpdate` statement of the rows that match the wheres.
+     *
+     * @param set the values to assign
+     * @return the update statement
+     */
+    fun updateQuery(session: SharedSessionContract, wheres: ConstructWhereImplementation, set: UpdateSet): Query<*> {
+        val cb = session.criteriaBuilder
+        val cu = cb.createCriteriaUpdate(model)
+        val root = cu.from(model)
+
+        set.values.forEach { (field, value) -> cu.set(root.get<Any>(field), value) }
+        wheres.constructPredicate(cb, cu, root)?.let { cu.where(it) }
+
+        return session.createQuery(cu)
+    }
+
+    /**
+     * Creates the `CriteriaDelete` statement of the rows that match the wheres.
+     *
+     * @return the delete statement
+     */
+    fun deleteQuery(session: SharedSessionContract, wheres: ConstructWhereImplementation): Query<*> {
+        val cb = session.criteriaBuilder
+        val cd = cb.createCriteriaDelete(model)
+        val root = cd.from(model)
+
+        wheres.constructPredicate(cb, cd, root)?.let { cd.where(it) }
+
+        return session.createQuery(cd)
+    }
+
+    /**
+     * Creates the query that selects, ordered by id, up to [size] ids greater than [lastId]
+     * of the rows that match the wheres and joins.
+     *
+     * @param size the maximum rows deleted by a chunk
+     * @param lastId the last id of the previous chunk, null for the first chunk
+     * @return the query of the ids
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun chunkIdsQuery(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        size: Int,
+        lastId: Any?
+    ): Query<*> {
+        val cb = session.criteriaBuilder
+        val idCriteria = cb.createQuery(Any::class.java)
+        val idRoot = idCriteria.from(model)
+        val idPath = idRoot.get<Comparable<Any>>(idName(session))
+
+        joins.construct(idRoot)
+        idCriteria.select(idPath as Expression<Any>).distinct(true)
+        wheres.setJoins(joins.joins).setJoinConditions(joins.joinConditions).construct(cb, idCriteria, idRoot)
+
+        if (lastId != null) {
+            val restrictions = listOfNotNull<Predicate>(idCriteria.restriction) + cb.greaterThan(idPath, lastId as Comparable<Any>)
+            idCriteria.where(*restrictions.toTypedArray())
+        }
+        idCriteria.orderBy(cb.asc(idPath))
+
+        val idQuery = queryOptions.apply(session.createQuery(idCriteria))
+        idQuery.maxResults = size
+
+        return idQuery
+    }
+
+    /**
+     * Creates the `CriteriaDelete` statement of the rows with the given ids.
+     *
+     * @param ids the ids selected by [chunkIdsQuery]
+     * @return the delete statement
+     */
+    fun deleteByIdsQuery(session: SharedSessionContract, ids: List<*>): Query<*> {
+        val cb = session.criteriaBuilder
+        val cd = cb.createCriteriaDelete(model)
+        val root = cd.from(model)
+        cd.where(root.get<Any>(idName(session)).`in`(ids))
+
+        return session.createQuery(cd)
+    }
+
+    private fun idName(session: SharedSessionContract): String {
+        val entity = FetchUtils.factoryOf(session).metamodel.entity(model)
+        return FetchUtils.idName(entity) ?: throw QueryException("deleteInChunks needs a single id in ${model.simpleName}")
     }
 
     /**
@@ -225,7 +656,7 @@ internal class HefestoExecutor<T : BaseModel>(
      * @return the first result of the specified class, or null if no result is found
      */
     fun <R> findFirstFor(
-        session: Session,
+        session: SharedSessionContract,
         resultClass: Class<R>,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
@@ -239,7 +670,7 @@ internal class HefestoExecutor<T : BaseModel>(
         }
 
         val cr = commonConstructForCustomResult(session, resultClass, selects, wheres, joins, orders, groupBy)
-        val query = session.createQuery(cr)
+        val query = queryOptions.apply(session.createQuery(cr))
         query.maxResults = 1
         
         if (offset != null) {
@@ -256,7 +687,7 @@ internal class HefestoExecutor<T : BaseModel>(
      * @return a list of objects of the specified resultClass
      */
     fun <R> findFor(
-        session: Session,
+        session: SharedSessionContract,
         resultClass: Class<R>,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
@@ -271,7 +702,7 @@ internal class HefestoExecutor<T : BaseModel>(
         }
 
         val cr = commonConstructForCustomResult(session, resultClass, selects, wheres, joins, orders, groupBy)
-        val query = session.createQuery(cr)
+        val query = queryOptions.apply(session.createQuery(cr))
         
         if (limit != null) {
             query.maxResults = limit
@@ -283,6 +714,36 @@ internal class HefestoExecutor<T : BaseModel>(
         return query.resultList
     }
 
+    /**
+     * Selects only the given fields without creating the entities or transforming the rows.
+     * The rows are the values when one field is selected, otherwise an array with the value of every field.
+     *
+     * @param selects the fields to select
+     * @return the rows read from the result
+     */
+    fun pluck(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation<T>,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation<T>,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?
+    ): List<Any?> {
+        val cr = commonConstructForCustomResult(session, Any::class.java, selects, wheres, joins, orders, groupBy)
+        val query = queryOptions.apply(session.createQuery(cr))
+
+        if (limit != null) {
+            query.maxResults = limit
+        }
+        if (offset != null) {
+            query.firstResult = offset
+        }
+
+        return query.resultList
+    }
+
     /**
      * Generates a common criteria query for custom result.
      *
@@ -290,7 +751,7 @@ internal class HefestoExecutor<T : BaseModel>(
      * @return the generated criteria query
      */
     private fun <R> commonConstructForCustomResult(
-        session: Session,
+        session: SharedSessionContract,
         resultClass: Class<R>,
         selects: ConstructSelectImplementation<T>,
         wheres: ConstructWhereImplementation,
@@ -3,6 +3,7 @@ package io.github.robertomike.hefesto.constructors
 import jakarta.persistence.criteria.CriteriaQuery
 import jakarta.persistence.criteria.Expression
 import jakarta.persistence.criteria.Root
+import jakarta.persistence.criteria.Subquery
 
 /**
  * Criteria API implementation of GROUP BY clause construction.
@@ -33,4 +34,18 @@ class ConstructGroupByImplementation : ConstructGroupBy() {
 
         cr.groupBy(*items.map { value -> root.get<Any>(value.field) }.toTypedArray())
     }
+
+    /**
+     * Constructs and applies GROUP BY clauses to a sub-query.
+     *
+     * @param subQuery the sub-query to apply grouping to
+     * @param root the root of the sub-query
+     */
+    fun construct(subQuery: Subquery<*>, root: Root<*>) {
+        if (items.isEmpty()) {
+            return
+        }
+
+        subQuery.groupBy(*items.map { value -> root.get<Any>(value.field) }.toTypedArray())
+    }
 }
@@ -46,19 +46,59 @@ class ConstructOrderImplementation : ConstructOrder() {
         cr.orderBy(items.map { constructOrder(it) })
     }
 
+    /**
+     * Groups the query by the id and applies the orders, so every id is returned once and the limit counts ids.
+     * The fields of the root are added to the group by, the fields of the joins are ordered
+     * by their minimum (ASC) or maximum (DESC) value in the group.
+     *
+     * @param cb the CriteriaBuilder for creating order expressions
+     * @param cr the CriteriaQuery to group and order
+     * @param root the root entity
+     * @param id the id of the root entity
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun constructGroupedById(cb: CriteriaBuilder, cr: CriteriaQuery<*>, root: Root<*>, id: Expression<*>) {
+        this.cb = cb
+        this.root = root
+
+        val groups = mutableListOf(id)
+        cr.orderBy(items.map { value ->
+            val (from, field) = resolve(value)
+
+            if (from == root) {
+                val path = from.get<Any>(field)
+                groups.add(path)
+                sort(value, path)
+            } else {
+                val path = from.get<Comparable<Any>>(field)
+                val aggregate = if (value.sort == io.github.robertomike.hefesto.enums.Sort.DESC) cb.greatest(path) else cb.least(path)
+                sort(value, aggregate as Expression<*>)
+            }
+        })
+        cr.groupBy(groups)
+    }
+
     private fun constructOrder(value: io.github.robertomike.hefesto.actions.Order): Order {
-        var from: From<*, *> = root
-        var field = value.field
+        val (from, field) = resolve(value)
+
+        return sort(value, from.get<Any>(field))
+    }
+
+    private fun resolve(value: io.github.robertomike.hefesto.actions.Order): Pair<From<*, *>, String> {
+        val field = value.field
 
         if (field.contains(".") && joins.containsKey(field.split(HibernateUtils.DOT_REGEX.toRegex())[0])) {
             val splitted = field.split(HibernateUtils.DOT_REGEX.toRegex())
-            from = joins[splitted[0]]!!
-            field = splitted[1]
+            return joins[splitted[0]]!! to splitted[1]
         }
 
+        return root to field
+    }
+
+    private fun sort(value: io.github.robertomike.hefesto.actions.Order, expression: Expression<*>): Order {
         return when (value.sort) {
-            io.github.robertomike.hefesto.enums.Sort.ASC -> cb.asc(from.get<Any>(field))
-            io.github.robertomike.hefesto.enums.Sort.DESC -> cb.desc(from.get<Any>(field))
+            io.github.robertomike.hefesto.enums.Sort.ASC -> cb.asc(expression)
+            io.github.robertomike.hefesto.enums.Sort.DESC -> cb.desc(expression)
             else -> throw QueryException("Unsupported sort: ${value.sort}")
         }
     }
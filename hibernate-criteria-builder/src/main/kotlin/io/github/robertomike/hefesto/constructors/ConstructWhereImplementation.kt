@@ -7,9 +7,13 @@ import io.github.robertomike.hefesto.enums.WhereOperator
 import io.github.robertomike.hefesto.exceptions.QueryException
 import io.github.robertomike.hefesto.exceptions.UnsupportedOperationException
 import io.github.robertomike.hefesto.utils.CastUtils
+import io.github.robertomike.hefesto.utils.HefestoFunctions
 import io.github.robertomike.hefesto.utils.HibernateUtils.DOT_REGEX
 import io.github.robertomike.hefesto.utils.HibernateUtils.getFieldFrom
+import io.github.robertomike.hefesto.utils.StagedValues
 import jakarta.persistence.criteria.*
+import org.hibernate.query.sqm.NodeBuilder
+import org.hibernate.query.sqm.tree.expression.ValueBindJpaCriteriaParameter
 
 /**
  * Criteria API implementation of WHERE clause construction.
@@ -30,6 +34,7 @@ import jakarta.persistence.criteria.*
 class ConstructWhereImplementation : ConstructWhere() {
     protected lateinit var cb: CriteriaBuilder
     protected var cr: CriteriaQuery<*>? = null
+    private var statement: CommonAbstractCriteria? = null
     protected lateinit var root: Root<*>
     private var joins: Map<String, Join<*, *>> = HashMap()
     private var parentRoot: Root<*>? = null
@@ -67,11 +72,45 @@ class ConstructWhereImplementation : ConstructWhere() {
      * @param root the root entity
      */
     fun construct(cb: CriteriaBuilder, cr: CriteriaQuery<*>, root: Root<*>) {
+        clearPlans()
         this.cr = cr
+        this.statement = cr
         this.cb = cb
         this.root = root
 
-        // Collect all predicates: regular WHERE conditions + inline join conditions
+        val predicates = predicates()
+        if (predicates.isNotEmpty()) {
+            cr.where(*predicates.toTypedArray())
+        }
+    }
+
+    /**
+     * Constructs and applies all WHERE predicates to a sub-query that filters the same entity of the query,
+     * like the sub-query of the count grouped by several fields.
+     * The sub-queries of the wheres are created from the sub-query, the custom wheres receive a null CriteriaQuery.
+     *
+     * @param cb the CriteriaBuilder for creating predicates
+     * @param subQuery the sub-query to apply predicates to
+     * @param root the root of the sub-query
+     */
+    fun construct(cb: CriteriaBuilder, subQuery: Subquery<*>, root: Root<*>) {
+        clearPlans()
+        this.cr = null
+        this.statement = subQuery
+        this.cb = cb
+        this.root = root
+        this.parentRoot = null
+
+        val predicates = predicates()
+        if (predicates.isNotEmpty()) {
+            subQuery.where(*predicates.toTypedArray())
+        }
+    }
+
+    /**
+     * Creates the predicates of the regular WHERE conditions and the inline join conditions.
+     */
+    private fun predicates(): List<Predicate> {
         val predicates = mutableListOf<Predicate>()
         
         // Add regular WHERE conditions
@@ -88,13 +127,29 @@ class ConstructWhereImplementation : ConstructWhere() {
                 }
             }
         }
-        
-        // Apply all predicates
-        if (predicates.isNotEmpty()) {
-            cr.where(*predicates.toTypedArray())
-        }
+
+        return predicates
     }
     
+    /**
+     * Constructs the WHERE predicate of a bulk statement (update or delete), which doesn't have a CriteriaQuery.
+     * The sub-queries are created from the statement, the custom wheres receive a null CriteriaQuery.
+     *
+     * @param cb the CriteriaBuilder for creating predicates
+     * @param statement the CriteriaUpdate or CriteriaDelete
+     * @param root the root entity of the statement
+     * @return the predicate, null when there are no conditions
+     */
+    fun constructPredicate(cb: CriteriaBuilder, statement: CommonAbstractCriteria, root: Root<*>): Predicate? {
+        clearPlans()
+        this.cr = null
+        this.statement = statement
+        this.cb = cb
+        this.root = root
+
+        return if (isEmpty()) null else transform(items)
+    }
+
     /**
      * Creates a predicate for an inline join condition
      */
@@ -274,7 +329,9 @@ class ConstructWhereImplementation : ConstructWhere() {
 
     private fun applyWhereExist(whereExist: WhereExist): Predicate {
         val subBuilder = whereExist.subQuery as Hefesto<*>
-        val subQuery = subBuilder.getSubQuery(cr!!, root, cb, joins)
+        subBuilder.wheres.arrayParameters = arrayParameters
+        subBuilder.wheres.stagedSlots = stagedSlots
+        val subQuery = subBuilder.getSubQuery(statement!!, root, cb, joins)
 
         return if (whereExist.exists) {
             cb.exists(subQuery)
@@ -345,7 +402,11 @@ class ConstructWhereImplementation : ConstructWhere() {
             Operator.IS_NULL -> cb.isNull(getFieldFrom<Any>(from, field))
             Operator.IS_NOT_NULL -> cb.isNotNull(getFieldFrom<Any>(from, field))
 
-            Operator.IN -> applyWhereIn(where, from, field)
+            Operator.IN -> when (where) {
+                is WhereInArray -> applyWhereInArray(where, from, field)
+                is WhereStaged -> applyWhereStaged(where, from, field)
+                else -> applyWhereIn(where, from, field)
+            }
             Operator.NOT_IN -> cb.not(applyWhereIn(where, from, field))
 
             Operator.FIND_IN_SET -> cb.greaterThan(
@@ -365,18 +426,10 @@ class ConstructWhereImplementation : ConstructWhere() {
     }
 
     private fun applyWhereIn(where: Where, from: From<*, *>, field: String): Predicate {
-        val inClause = cb.`in`(getFieldFrom<Any>(from, field))
-
         when (val value = where.value) {
-            is Array<*> -> {
-                value.forEach { inClause.value(it as Any) }
-                return inClause
-            }
+            is Array<*> -> return applyInList(where, from, field, value.asList())
 
-            is Iterable<*> -> {
-                value.forEach { inClause.value(it as Any) }
-                return inClause
-            }
+            is Iterable<*> -> return applyInList(where, from, field, value as? List<*> ?: value.toList())
 
             is Hefesto<*> -> {
                 if (value.getSelectsSize() != 1) {
@@ -387,7 +440,10 @@ class ConstructWhereImplementation : ConstructWhere() {
                     throw QueryException("The sub-query must have custom result for Where IN operation")
                 }
 
-                inClause.value(value.getSubQuery(cr!!, root, cb, joins))
+                value.wheres.arrayParameters = arrayParameters
+                value.wheres.stagedSlots = stagedSlots
+                val inClause = cb.`in`(getFieldFrom<Any>(from, field))
+                inClause.value(value.getSubQuery(statement!!, root, cb, joins))
                 return inClause
             }
 
@@ -395,6 +451,55 @@ class ConstructWhereImplementation : ConstructWhere() {
         }
     }
 
+    /**
+     * Binds the values as one JDBC array with the function [HefestoFunctions.ANY], so the statement is the same
+     * for any values. The values that can't be an array are a standard IN, the databases that can't bind arrays throw.
+     */
+    private fun applyWhereInArray(where: WhereInArray, from: From<*, *>, field: String): Predicate {
+        val type = HefestoFunctions.arrayType(where.values) ?: return applyInList(where, from, field, where.values)
+        if (!arrayParameters) {
+            throw QueryException("whereInArray binds the values as an array, it's only supported on PostgreSQL and H2")
+        }
+
+        planArray(where, where.values)
+        return cb.isTrue(
+            cb.function(
+                HefestoFunctions.ANY,
+                Boolean::class.javaObjectType,
+                getFieldFrom<Any>(from, field),
+                ValueBindJpaCriteriaParameter(type, HefestoFunctions.arrayParameter(where.values), cb as NodeBuilder)
+            )
+        )
+    }
+
+    /**
+     * Reads the values from the temporary table of [StagedValues] when they are staged by the current execution,
+     * see [stagedSlots], otherwise it's a standard IN.
+     */
+    private fun applyWhereStaged(where: WhereStaged, from: From<*, *>, field: String): Predicate {
+        val function = stagedSlots[where]?.let { HefestoFunctions.stagedFunction(where.values, it) }
+        if (function == null) {
+            return applyInList(where, from, field, where.values)
+        }
+
+        planStaged(where, where.values)
+        return cb.isTrue(cb.function(function, Boolean::class.javaObjectType, getFieldFrom<Any>(from, field)))
+    }
+
+    /**
+     * Creates one IN predicate for every chunk of the plan, joined with or.
+     */
+    private fun applyInList(where: Where, from: From<*, *>, field: String, values: List<Any?>): Predicate {
+        val path = getFieldFrom<Any>(from, field)
+        val predicates = planInList(where, values).chunks.map { chunk ->
+            val inClause = cb.`in`(path)
+            chunk.forEach { inClause.value(it as Any) }
+            inClause
+        }
+
+        return if (predicates.size == 1) predicates[0] else cb.or(*predicates.toTypedArray())
+    }
+
     private fun applyWhereOperation(where: BaseWhere, vararg predicate: Predicate): Predicate {
         return when (where.whereOperation) {
             WhereOperator.OR -> cb.or(*predicate)
@@ -409,6 +514,7 @@ class ConstructWhereImplementation : ConstructWhere() {
     }
 
     fun constructSubQuery(subQuery: Subquery<*>, cb: CriteriaBuilder, root: Root<*>, parentRoot: Root<*>) {
+        clearPlans()
         if (isEmpty()) {
             return
         }
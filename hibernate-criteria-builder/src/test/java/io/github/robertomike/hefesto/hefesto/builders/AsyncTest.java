@@ -0,0 +1,85 @@
+package io.github.robertomike.hefesto.hefesto.builders;
+
+import io.github.robertomike.hefesto.BaseTest;
+import io.github.robertomike.hefesto.builders.BaseBuilder;
+import io.github.robertomike.hefesto.builders.Hefesto;
+import io.github.robertomike.hefesto.exceptions.QueryException;
+import io.github.robertomike.hefesto.hefesto.models.Pet;
+import io.github.robertomike.hefesto.hefesto.models.User;
+import io.github.robertomike.hefesto.sessions.SessionProvider;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(BaseTest.class)
+class AsyncTest {
+    @Test
+    void fanOutQueries() {
+        var users = Hefesto.make(User.class).getAsync();
+        var pets = Hefesto.make(Pet.class).countResultsAsync();
+        var first = Hefesto.make(User.class).findFirstAsync();
+
+        CompletableFuture.allOf(users, pets, first).join();
+
+        assertFalse(users.join().isEmpty());
+        assertTrue(pets.join() > 0);
+        assertTrue(first.join().isPresent());
+    }
+
+    @Test
+    void pageAsync() {
+        var total = Hefesto.make(User.class).countResults();
+        var page = Hefesto.make(User.class).pageAsync(2).join();
+
+        assertEquals(total, page.getTotal());
+        assertTrue(page.getData().size() <= 2);
+    }
+
+    @Test
+    void pageParallel() {
+        var expected = Hefesto.make(User.class).orderBy("id").page(2, 1);
+        var page = Hefesto.make(User.class).orderBy("id").pageParallel(2, 1);
+
+        assertEquals(expected.getTotal(), page.getTotal());
+        assertEquals(expected.getData().size(), page.getData().size());
+        assertEquals(1, page.getPage());
+    }
+
+    @Test
+    void pageParallelRefusesStagedWheres() {
+        var builder = Hefesto.make(User.class)
+                .whereInStaged("id", List.of(1L, 2L, 3L))
+                .whereIn("id", List.of(1L, 2L));
+
+        assertThrows(QueryException.class, () -> builder.pageParallel(2, 0));
+        assertEquals(2, builder.page(2, 0).getTotal());
+    }
+
+    @Test
+    void asyncNeedsAProviderWhenTheFactoryIsUnknown() {
+        var session = (Session) BaseBuilder.getSessionProvider().getSession();
+        var opened = new AtomicInteger();
+        var provider = new SessionProvider<Session>() {
+            @Override
+            public Session getSession() {
+                opened.incrementAndGet();
+                return session;
+            }
+
+            @Override
+            public void releaseSession(Session session) {
+            }
+        };
+
+        var builder = Hefesto.make(User.class);
+
+        assertThrows(QueryException.class, () -> builder.withSessionProvider(provider, builder::getAsync));
+        assertEquals(0, opened.get());
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.robertomike.hefesto.hefesto.builders;
+
+import io.github.robertomike.hefesto.BaseTest;
+import io.github.robertomike.hefesto.builders.Hefesto;
+import io.github.robertomike.hefesto.hefesto.models.User;
+import io.github.robertomike.hefesto.utils.CountCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(BaseTest.class)
+class CountCacheTest {
+    private CountCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CountCache(10, Duration.ofMinutes(1));
+        Hefesto.setCountCache(cache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Hefesto.setCountCache(null);
+    }
+
+    @Test
+    void pageReadsTotalFromCache() {
+        var first = Hefesto.make(User.class).where("name", "test").cacheCount().page(10);
+        var second = Hefesto.make(User.class).where("name", "test").cacheCount().page(10);
+
+        assertEquals(first.getTotal(), second.getTotal());
+        assertEquals(1, cache.getSize());
+
+        Hefesto.make(User.class).where("name", "javi").cacheCount().countResults();
+
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void withoutCacheCountIsNotStored() {
+        Hefesto.make(User.class).page(10);
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void invalidateByEntity() {
+        Hefesto.make(User.class).cacheCount().countResults();
+        cache.invalidate(User.class);
+
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.robertomike.hefesto.hefesto.builders;
+
+import io.github.robertomike.hefesto.BaseTest;
+import io.github.robertomike.hefesto.builders.BaseBuilder;
+import io.github.robertomike.hefesto.builders.Hefesto;
+import io.github.robertomike.hefesto.enums.Operator;
+import io.github.robertomike.hefesto.enums.Sort;
+import io.github.robertomike.hefesto.exceptions.QueryException;
+import io.github.robertomike.hefesto.hefesto.models.User;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(BaseTest.class)
+class KeysetPaginationTest {
+    @Test
+    void seekAllPages() {
+        var expected = Hefesto.make(User.class)
+                .orderBy("email", Sort.ASC)
+                .orderBy("name", Sort.DESC)
+                .orderBy("id")
+                .get()
+                .stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+
+        var ids = new ArrayList<Long>();
+        String cursor = null;
+        do {
+            var page = Hefesto.make(User.class)
+                    .orderBy("email", Sort.ASC)
+                    .orderBy("name", Sort.DESC)
+                    .seek(3, cursor);
+
+            page.getData().forEach(user -> ids.add(user.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    void pageAfter() {
+        var first = Hefesto.make(User.class)
+                .where("id", 7L, Operator.LESS)
+                .orderBy("id", Sort.DESC)
+                .seek(2);
+
+        assertTrue(first.getHasNext());
+
+        var second = Hefesto.make(User.class)
+                .where("id", 7L, Operator.LESS)
+                .orderBy("id", Sort.DESC)
+                .pageAfter(2, first.getData().get(1));
+
+        assertEquals(4L, second.getData().get(0).getId());
+        assertEquals(3L, second.getData().get(1).getId());
+    }
+
+    @Test
+    void pageAfterProxy() {
+        var current = (Session) BaseBuilder.getSessionProvider().getSession();
+
+        try (var other = current.getSessionFactory().openSession()) {
+            var proxy = other.getReference(User.class, 6L);
+            assertFalse(Hibernate.isInitialized(proxy));
+
+            var page = Hefesto.make(User.class)
+                    .where("id", 7L, Operator.LESS)
+                    .orderBy("id", Sort.DESC)
+                    .pageAfter(2, proxy);
+
+            assertEquals(List.of(5L, 4L), page.getData().stream().map(User::getId).toList());
+            assertFalse(Hibernate.isInitialized(proxy));
+        }
+
+        User detached;
+        try (var other = current.getSessionFactory().openSession()) {
+            detached = other.getReference(User.class, 6L);
+        }
+
+        var page = Hefesto.make(User.class)
+                .orderBy("name")
+                .pageAfter(2, detached);
+
+        assertEquals(List.of(7L, 5L), page.getData().stream().map(User::getId).toList());
+    }
+
+    @Test
+    void cursorWithDifferentOrder() {
+        var page = Hefesto.make(User.class).orderBy("name").seek(2);
+
+        assertThrows(QueryException.class, () -> Hefesto.make(User.class)
+                .orderBy("email")
+                .seek(2, page.getNextCursor())
+        );
+    }
+}
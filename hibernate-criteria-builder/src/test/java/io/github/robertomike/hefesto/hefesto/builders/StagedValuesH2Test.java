@@ -0,0 +1,153 @@
+package io.github.robertomike.hefesto.hefesto.builders;
+
+import io.github.robertomike.hefesto.builders.Hefesto;
+import io.github.robertomike.hefesto.enums.Status;
+import io.github.robertomike.hefesto.hefesto.models.Address;
+import io.github.robertomike.hefesto.hefesto.models.Pet;
+import io.github.robertomike.hefesto.hefesto.models.User;
+import io.github.robertomike.hefesto.hefesto.models.UserPet;
+import io.github.robertomike.hefesto.sessions.StaticSessionProvider;
+import io.github.robertomike.hefesto.utils.InListPlan;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the whereInStaged on the local temporary tables of H2 and the whereInArray with its arrays,
+ * with its own session factory.
+ */
+class StagedValuesH2Test {
+    private static SessionFactory sessionFactory;
+    private static Session session;
+    private static StaticSessionProvider<Session> provider;
+
+    @BeforeAll
+    static void setUp() {
+        var config = new Configuration()
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:hefesto_staged;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        config.addAnnotatedClass(User.class);
+        config.addAnnotatedClass(Address.class);
+        config.addAnnotatedClass(Pet.class);
+        config.addAnnotatedClass(UserPet.class);
+
+        sessionFactory = config.buildSessionFactory();
+        session = sessionFactory.openSession();
+        provider = new StaticSessionProvider<>(session);
+
+        session.beginTransaction();
+        List.of("test", "petto", "javi", "mary", "x".repeat(300)).forEach(name -> session.persist(
+                User.builder().name(name).email(name + "@mail.com").status(Set.of(Status.ACTIVE)).build()
+        ));
+        session.getTransaction().commit();
+        session.clear();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    void whereInStaged() {
+        var query = Hefesto.make(User.class).whereInStaged("name", List.of("test", "javi", "nobody"));
+
+        assertEquals(2, onH2(query::get).size());
+        assertEquals(InListPlan.Type.STAGED, query.getInListPlans().get(0).getType());
+        assertEquals(2, onH2(query::countResults));
+    }
+
+    @Test
+    void twoWheresInStaged() {
+        var ids = onH2(() -> Hefesto.make(User.class).orderBy("id").pluck("id", Long.class));
+        var query = Hefesto.make(User.class)
+                .whereInStaged("id", ids.subList(0, 3))
+                .whereInStaged("name", List.of("petto", "javi", "mary"));
+
+        assertEquals(2, onH2(query::get).size());
+        assertEquals(2, onH2(query::countResults));
+    }
+
+    @Test
+    void longTextsAreNotTruncated() {
+        var name = "x".repeat(300);
+
+        assertEquals(1, onH2(() -> Hefesto.make(User.class).whereInStaged("name", List.of(name)).get()).size());
+        assertEquals(0, onH2(() -> Hefesto.make(User.class).whereInStaged("name", List.of(name + "y")).get()).size());
+    }
+
+    @Test
+    void streamWhereInStaged() {
+        onH2(() -> {
+            try (var users = Hefesto.make(User.class).whereInStaged("name", List.of("test", "petto")).stream()) {
+                var nested = Hefesto.make(User.class).whereInStaged("name", List.of("javi")).get();
+
+                assertEquals(1, nested.size());
+                assertEquals(2, users.count());
+            }
+            return null;
+        });
+
+        assertEquals(1, onH2(() -> Hefesto.make(User.class).whereInStaged("name", List.of("mary")).get()).size());
+    }
+
+    @Test
+    void whereInArray() {
+        var ids = onH2(() -> Hefesto.make(User.class).orderBy("id").pluck("id", Long.class));
+        var query = Hefesto.make(User.class).whereInArray("id", ids.subList(0, 3));
+
+        assertEquals(3, onH2(query::get).size());
+        assertEquals(InListPlan.Type.ARRAY, query.getInListPlans().get(0).getType());
+        assertEquals(3, onH2(query::countResults));
+        assertEquals(1, onH2(() -> Hefesto.make(User.class).whereInArray("id", List.of(ids.get(0).intValue())).get()).size());
+    }
+
+    @Test
+    void pageParallelWithArrayWheres() {
+        var ids = onH2(() -> Hefesto.make(User.class).orderBy("id").pluck("id", Long.class));
+        var expected = onH2(() -> Hefesto.make(User.class).whereInArray("id", ids).orderBy("id").page(2, 1));
+
+        for (int i = 0; i < 20; i++) {
+            var page = onH2(() -> Hefesto.make(User.class).whereInArray("id", ids).orderBy("id").pageParallel(2, 1));
+
+            assertEquals(expected.getTotal(), page.getTotal());
+            assertEquals(expected.getData().size(), page.getData().size());
+        }
+    }
+
+    @Test
+    void whereInStagedKeepsTheTransaction() {
+        var transaction = session.beginTransaction();
+        try {
+            session.persist(User.builder().name("staged").email("staged@mail.com").status(Set.of(Status.ACTIVE)).build());
+            session.flush();
+
+            assertEquals(2, onH2(() -> Hefesto.make(User.class).whereInStaged("name", List.of("test", "javi")).get()).size());
+            assertEquals(1, onH2(() -> Hefesto.make(User.class).where("name", "staged").get()).size());
+        } finally {
+            transaction.rollback();
+            session.clear();
+        }
+
+        assertEquals(0, onH2(() -> Hefesto.make(User.class).where("name", "staged").get()).size());
+    }
+
+    private static <R> R onH2(Supplier<R> block) {
+        return Hefesto.make(User.class).withSessionProvider(provider, block::get);
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.robertomike.hefesto.hefesto.builders;
+
+import io.github.robertomike.hefesto.BaseTest;
+import io.github.robertomike.hefesto.builders.BaseBuilder;
+import io.github.robertomike.hefesto.builders.Hefesto;
+import io.github.robertomike.hefesto.hefesto.models.Pet;
+import io.github.robertomike.hefesto.hefesto.models.User;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(BaseTest.class)
+class StreamTest {
+    @Test
+    void streamUsers() {
+        var expected = Hefesto.make(User.class).orderBy("id").get();
+
+        try (var users = Hefesto.make(User.class).orderBy("id").fetchSize(2).clearEvery(2).stream()) {
+            var ids = users.map(User::getId).collect(Collectors.toList());
+
+            assertEquals(expected.size(), ids.size());
+            assertEquals(expected.get(0).getId(), ids.get(0));
+        }
+    }
+
+    @Test
+    void clearEveryOnlyEvictsTheStreamedRows() {
+        var session = (Session) BaseBuilder.getSessionProvider().getSession();
+        var pet = Hefesto.make(Pet.class).findFirstById(1L).orElseThrow();
+
+        try (var users = Hefesto.make(User.class).fetchSize(2).clearEvery(1).stream()) {
+            var first = users.findFirst().orElseThrow();
+
+            assertTrue(session.contains(first));
+        }
+
+        try (var users = Hefesto.make(User.class).fetchSize(2).clearEvery(1).stream()) {
+            var read = users.limit(2).toList();
+
+            assertFalse(session.contains(read.get(0)));
+        }
+
+        assertTrue(session.contains(pet));
+    }
+
+    @Test
+    void streamWithLimit() {
+        try (var users = Hefesto.make(User.class).limit(1).stream()) {
+            assertEquals(1, users.count());
+        }
+    }
+
+    @Test
+    void streamStateless() {
+        var expected = Hefesto.make(User.class).countResults();
+
+        try (var users = Hefesto.make(User.class).stateless().stream()) {
+            assertEquals(expected, users.count());
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package io.github.robertomike.hefesto.hql.builders
 
+import io.github.robertomike.hefesto.actions.Select
+import io.github.robertomike.hefesto.actions.UpdateSet
 import io.github.robertomike.hefesto.hql.actions.wheres.WhereRaw
-import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.builders.HibernateBuilder
 import io.github.robertomike.hefesto.enums.JoinOperator
 import io.github.robertomike.hefesto.enums.WhereOperator
+import io.github.robertomike.hefesto.exceptions.QueryException
 import io.github.robertomike.hefesto.hql.constructors.ConstructGroupByImplementation
 import io.github.robertomike.hefesto.hql.constructors.ConstructJoinFetch
 import io.github.robertomike.hefesto.hql.constructors.ConstructJoinImplementation
@@ -11,17 +14,18 @@ import io.github.robertomike.hefesto.hql.constructors.ConstructOrderImplementati
 import io.github.robertomike.hefesto.hql.constructors.ConstructSelectImplementation
 import io.github.robertomike.hefesto.hql.constructors.ConstructWhereImplementation
 import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.utils.HefestoFunctions
 import io.github.robertomike.hefesto.utils.Page
-import io.github.robertomike.hefesto.utils.SharedMethods
 import io.github.robertomike.hefesto.hql.utils.SubQueryContext
-import org.hibernate.Session
+import jakarta.persistence.Entity
+import org.hibernate.SharedSessionContract
 import org.hibernate.query.Query
 import java.util.*
-import java.util.function.Consumer
+import java.util.function.Function
+import java.util.stream.Stream
 
-class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementation, ConstructJoinImplementation,
-        ConstructOrderImplementation, ConstructSelectImplementation, ConstructGroupByImplementation, Hefesto<T>>,
-        SharedMethods<Hefesto<T>> {
+class Hefesto<T : BaseModel> : HibernateBuilder<T, ConstructWhereImplementation, ConstructJoinImplementation,
+        ConstructOrderImplementation, ConstructSelectImplementation, ConstructGroupByImplementation, Hefesto<T>> {
 
     override val joinsFetch = ConstructJoinFetch()
     var acronymTable: String = ""
@@ -29,7 +33,7 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
 
     // Lazy initialization of executor - created only when query execution is needed
     private val executor: HefestoExecutor<T> by lazy {
-        HefestoExecutor(model, table!!, acronymTable)
+        HefestoExecutor(model, table!!, acronymTable, queryOptions)
     }
 
     constructor(model: Class<T>) : super(model) {
@@ -116,20 +120,74 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
      * or an empty Optional if the result set is empty.
      */
     override fun findFirst(): Optional<T> {
-        return executor.findFirst(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, this)
+        return execute { executor.findFirst(it, selects, wheres, joins, joinsFetch, orders, groupBy, this) }
+    }
+
+    /**
+     * Creates the query of the builder and passes it to the function.
+     * The query is bound to the session of the execution, so it can only be used inside the function,
+     * the session is released and the staged values are dropped when the function returns.
+     *
+     * ```java
+     * List<User> users = Hefesto.make(User.class)
+     *     .where("status", Status.ACTIVE)
+     *     .withQuery(query -> query.setLockMode(LockModeType.PESSIMISTIC_WRITE).list());
+     * ```
+     *
+     * @param function receives the created query
+     * @return the result of the function
+     */
+    fun <R, V> withQuery(function: Function<Query<R>, V>): V {
+        return execute {
+            function.apply(executor.createQuery(it, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this))
+        }
+    }
+
+    /**
+     * Same as [withQuery] without applying the result transformer of the selects.
+     *
+     * @param function receives the created query
+     * @return the result of the function
+     */
+    fun <R, V> withBaseQuery(function: Function<Query<R>, V>): V {
+        return execute {
+            function.apply(executor.createBaseQuery(it, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, false, this))
+        }
     }
 
     /**
      * Creates a query for the given criteria.
      *
+     * The session is taken from the provider and never handed back, so the query keeps working after this call.
+     * It doesn't work with the providers that close the session when it's released, like
+     * `SessionFactorySessionProvider`, the session would never be closed. The values of the `whereInStaged`
+     * are not staged, they are bound as a standard `whereIn`.
+     *
      * @return The created query.
      */
+    @Deprecated("The session of the query is never released, use withQuery", ReplaceWith("withQuery(function)"))
     fun <R> createQuery(): Query<R> {
-        return executor.createQuery(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this)
+        return executor.createQuery(providedSession(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this)
     }
 
+    /**
+     * Same as [createQuery] without applying the result transformer of the selects.
+     *
+     * @return The created query.
+     */
+    @Deprecated("The session of the query is never released, use withBaseQuery", ReplaceWith("withBaseQuery(function)"))
     fun <R> createBaseQuery(): Query<R> {
-        return executor.createBaseQuery(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, false, this)
+        return executor.createBaseQuery(providedSession(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, false, this)
+    }
+
+    /**
+     * Resolves the session from the provider without releasing it, only for the deprecated [createQuery].
+     * The wheres are marked with the features of its database, like the executions do.
+     */
+    private fun providedSession(): SharedSessionContract {
+        val session = resolveProvider().getSession() as? SharedSessionContract ?: throw QueryException("Session is not set")
+        wheres.arrayParameters = HefestoFunctions.supportsArrays(session)
+        return session
     }
 
     /**
@@ -138,7 +196,17 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
      * @return a list of objects
      */
     override fun get(): List<T> {
-        return executor.get(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this)
+        return execute { executor.get(it, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this) }
+    }
+
+    /**
+     * Retrieves the results as a stream backed by a forward only cursor (`ScrollMode.FORWARD_ONLY`).
+     * The session is released when the stream is closed.
+     *
+     * @return a stream of objects, it must be closed
+     */
+    override fun stream(): Stream<T> {
+        return executeStream { executor.stream(it, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this) }
     }
 
     /**
@@ -149,7 +217,23 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
      * @return a Page object containing the retrieved results, the offset used, and the total number of results
      */
     override fun page(limit: Int, offset: Long): Page<T> {
-        return executor.page(getSessionInstance(), selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this)
+        val key = countCacheKey(queriedModel)
+
+        return execute { session ->
+            executor.page(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this) {
+                cachedCount(key) { executor.countResults(session, wheres, joins, groupBy, this) }
+            }
+        }
+    }
+
+    /**
+     * Checks if the query has results with a `select 1` limited to one row,
+     * so the database stops at the first match instead of counting all the rows.
+     *
+     * @return true if exists
+     */
+    override fun exist(): Boolean {
+        return execute { executor.exists(it, wheres, joins, this) }
     }
 
     /**
@@ -158,7 +242,49 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
      * @return the count of results as a Long value
      */
     override fun countResults(): Long {
-        return executor.countResults(getSessionInstance(), wheres, joins, groupBy, this)
+        return cachedCount(countCacheKey(queriedModel)) {
+            execute { executor.countResults(it, wheres, joins, groupBy, this) }
+        }
+    }
+
+    override val queriedModel: Class<*>
+        get() = originalModel ?: model
+
+    override fun isEntityQuery(): Boolean {
+        return originalModel == null && selects.isEmpty() && model.isAnnotationPresent(Entity::class.java)
+    }
+
+    override fun list(session: SharedSessionContract, limit: Int?, offset: Int?): List<T> {
+        return executor.get(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this)
+    }
+
+    override fun prepareCount(session: SharedSessionContract): (SharedSessionContract) -> Long {
+        val countParams = mutableMapOf<String, Any?>()
+        val countQuery = executor.getCountQuery(session, wheres, joins, groupBy, countParams, this)
+        return { executor.countResults(it, countQuery, countParams) }
+    }
+
+    override fun updateQuery(session: SharedSessionContract, set: UpdateSet): Query<*> {
+        return executor.updateQuery(session, wheres, set)
+    }
+
+    override fun deleteQuery(session: SharedSessionContract): Query<*> {
+        return executor.deleteQuery(session, wheres)
+    }
+
+    override fun chunkIdsQuery(session: SharedSessionContract, size: Int, lastId: Any?): Query<*> {
+        return executor.chunkIdsQuery(session, wheres, joins, size, lastId, this)
+    }
+
+    override fun deleteByIdsQuery(session: SharedSessionContract, ids: List<*>): Query<*> {
+        return executor.deleteByIdsQuery(session, ids)
+    }
+
+    override fun pluckRows(session: SharedSessionContract, fields: List<String>): List<Any?> {
+        val pluckSelects = ConstructSelectImplementation()
+        fields.forEach { pluckSelects.add(Select(it)) }
+
+        return executor.pluck(session, pluckSelects, wheres, joins, orders, groupBy, limit, offset, this)
     }
 
     /**
@@ -168,8 +294,10 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
      * @return the first result of the specified class, or null if no result is found
      */
     fun <R> findFirstFor(resultClass: Class<R>): R {
-        return executor.findFirstFor(getSessionInstance(), resultClass, selects, wheres, joins, joinsFetch, orders, groupBy,
-            offset, this)
+        return execute {
+            executor.findFirstFor(it, resultClass, selects, wheres, joins, joinsFetch, orders, groupBy,
+                offset, this)
+        }
     }
 
     /**
@@ -179,7 +307,7 @@ class Hefesto<T : BaseModel> : BaseBuilder<T, Session, ConstructWhereImplementat
      * @return a list of objects of the specified resultClass
      */
     fun <R> findFor(resultClass: Class<R>): List<R> {
-        return executor.findFor(getSessionInstance(), resultClass, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this)
+        return execute { executor.findFor(it, resultClass, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, this) }
     }
 
     fun getQuery(params: MutableMap<String, Any?>): String {
@@ -7,12 +7,26 @@ import io.github.robertomike.hefesto.hql.constructors.ConstructOrderImplementati
 import io.github.robertomike.hefesto.hql.constructors.ConstructSelectImplementation
 import io.github.robertomike.hefesto.hql.constructors.ConstructWhereImplementation
 import io.github.robertomike.hefesto.hql.utils.FluentHibernateResultTransformer
+import io.github.robertomike.hefesto.actions.UpdateSet
+import io.github.robertomike.hefesto.actions.wheres.Where
+import io.github.robertomike.hefesto.enums.Operator
 import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.utils.BatchLoader
+import io.github.robertomike.hefesto.utils.CountPlanner
+import io.github.robertomike.hefesto.utils.FetchPlanner
+import io.github.robertomike.hefesto.utils.FetchUtils
+import io.github.robertomike.hefesto.utils.HefestoFunctions
 import io.github.robertomike.hefesto.utils.Page
+import io.github.robertomike.hefesto.utils.QueryOptions
+import io.github.robertomike.hefesto.utils.ScrollUtils
+import jakarta.persistence.Entity
+import jakarta.persistence.metamodel.ManagedType
 import org.hibernate.QueryException
-import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+import org.hibernate.engine.spi.SharedSessionContractImplementor
 import org.hibernate.query.Query
 import java.util.*
+import java.util.stream.Stream
 
 /**
  * Internal executor class responsible for query construction and execution in HQL.
@@ -24,13 +38,21 @@ import java.util.*
 internal class HefestoExecutor<T : BaseModel>(
     private val model: Class<T>,
     private val table: String,
-    private val acronymTable: String
+    private val acronymTable: String,
+    private val queryOptions: QueryOptions
 ) {
+    private companion object {
+        /**
+         * The alias of the root in the count of the queries grouped by several fields
+         */
+        const val GROUP_ALIAS = "hefestoGroup"
+    }
+
     /**
      * Creates a base Query object from the builder components.
      */
     fun <R> createBaseQuery(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation,
@@ -51,10 +73,14 @@ internal class HefestoExecutor<T : BaseModel>(
         )) as Query<R>
 
         params.forEach { (key, value) -> query.setParameter(key, value) }
+        queryOptions.apply(query)
 
         if (isCounting) {
             return query
         }
+        if (selects.isEmpty() && isEntity()) {
+            queryOptions.applyGraph(session, query)
+        }
 
         if (limit != null) {
             query.maxResults = limit
@@ -70,7 +96,7 @@ internal class HefestoExecutor<T : BaseModel>(
      * Creates a query with result transformation applied.
      */
     fun <R> createQuery(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation,
@@ -93,7 +119,62 @@ internal class HefestoExecutor<T : BaseModel>(
      * Executes the query and returns a list of results.
      */
     fun get(
-        session: Session,
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?,
+        hefesto: Hefesto<T>
+    ): List<T> {
+        return list(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, hefesto)
+    }
+
+    /**
+     * Executes the query, when a collection is fetched and the results are limited
+     * the ids are loaded first so the pagination is done by the database instead of in memory.
+     * The relationships of `withPlanned` are planned and the ones of `withBatch` are loaded after the query.
+     */
+    private fun list(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?,
+        hefesto: Hefesto<T>
+    ): List<T> {
+        if (selects.isNotEmpty() || !isEntity()) {
+            return fetchList(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset, hefesto)
+        }
+
+        var fetches = joinsFetch
+        var batchFetches: List<String> = queryOptions.batchFetches
+        if (queryOptions.plannedFetches.isNotEmpty()) {
+            val entity = entityType(session) ?: throw QueryException("The entity ${model.simpleName} is not mapped")
+            val plan = FetchPlanner.plan(entity, queryOptions.plannedFetches, joinsFetch)
+            queryOptions.fetchPlan = plan
+
+            fetches = ConstructJoinFetch()
+            fetches.addAll(joinsFetch)
+            fetches.addAll(plan.joinFetches)
+            batchFetches = batchFetches + plan.batchFetches
+        }
+
+        val results = fetchList(session, selects, wheres, joins, fetches, orders, groupBy, limit, offset, hefesto)
+        BatchLoader.load(session, results, batchFetches, queryOptions)
+
+        return results
+    }
+
+    private fun fetchList(
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation,
@@ -104,17 +185,112 @@ internal class HefestoExecutor<T : BaseModel>(
         offset: Int?,
         hefesto: Hefesto<T>
     ): List<T> {
+        val limited = limit != null || offset != null
+        if (limited && joinsFetch.isNotEmpty() && selects.isEmpty() && groupBy.isEmpty() && isEntity()) {
+            val entity = entityType(session)
+            val idName = entity?.let { FetchUtils.idName(it) }
+
+            if (entity != null && idName != null && FetchUtils.hasCollectionFetch(entity, joinsFetch)) {
+                return listByIds(session, entity, idName, selects, wheres, joins, joinsFetch, orders, limit, offset, hefesto)
+            }
+        }
+
         return createQuery<T>(
-            session, selects, wheres, joins, joinsFetch, 
+            session, selects, wheres, joins, joinsFetch,
             orders, groupBy, limit, offset, hefesto
         ).list()
     }
 
+    /**
+     * Loads the limited ids with the filters and orders of the query,
+     * then loads the entities with the fetches and returns them in the order of the ids.
+     * The ids are grouped in the database, so the to-many joins don't repeat them and the limit counts ids.
+     * The inner fetches of the root are replaced by `is not empty` and `is not null` conditions in the first query,
+     * so they filter the rows without duplicating the ids.
+     */
+    private fun listByIds(
+        session: SharedSessionContract,
+        entity: ManagedType<*>,
+        idName: String,
+        selects: ConstructSelectImplementation,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        limit: Int?,
+        offset: Int?,
+        hefesto: Hefesto<T>
+    ): List<T> {
+        val params = mutableMapOf<String, Any?>()
+        val conditions = FetchUtils.innerFetches(entity, joinsFetch).map {
+            "$acronymTable.${it.name} ${if (it.isCollection) "is not empty" else "is not null"}"
+        }
+        var where = wheres.construct(params, acronymTable)
+        if (conditions.isNotEmpty()) {
+            val fetchConditions = conditions.joinToString(" and ")
+            where = if (where.isEmpty()) "Where $fetchConditions" else "Where (${where.removePrefix("Where").trim()}) and $fetchConditions"
+        }
+
+        val hql = listOf(
+            "select $acronymTable.$idName from $table", acronymTable,
+            joins.construct(hefesto),
+            where,
+            orders.constructGroupedById(acronymTable, "$acronymTable.$idName")
+        ).joinToString(" ")
+
+        val idQuery = session.createQuery(hql)
+        params.forEach { (key, value) -> idQuery.setParameter(key, value) }
+        queryOptions.apply(idQuery)
+        if (limit != null) {
+            idQuery.maxResults = limit
+        }
+        if (offset != null) {
+            idQuery.firstResult = offset
+        }
+
+        val ids = idQuery.list()
+        if (ids.isEmpty()) {
+            return emptyList()
+        }
+
+        val idWheres = ConstructWhereImplementation()
+        idWheres.add(Where(idName, Operator.IN, ids))
+        val results = createQuery<T>(
+            session, selects, idWheres, ConstructJoinImplementation(), joinsFetch,
+            ConstructOrderImplementation(), ConstructGroupByImplementation(), null, null, hefesto
+        ).list()
+
+        return FetchUtils.sortByIds(results, ids, FetchUtils.factoryOf(session))
+    }
+
+    /**
+     * Executes the query and returns a stream backed by a forward only cursor.
+     * The result transformer is applied to every row while the stream is consumed.
+     */
+    fun stream(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        joinsFetch: ConstructJoinFetch,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?,
+        hefesto: Hefesto<T>
+    ): Stream<T> {
+        val query = createQuery<T>(
+            session, selects, wheres, joins, joinsFetch,
+            orders, groupBy, limit, offset, hefesto
+        )
+        return ScrollUtils.stream(query, session, queryOptions.clearEvery)
+    }
+
     /**
      * Executes the query and returns an Optional containing the first result.
      */
     fun findFirst(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation,
@@ -124,18 +300,16 @@ internal class HefestoExecutor<T : BaseModel>(
         hefesto: Hefesto<T>
     ): Optional<T> {
         return Optional.ofNullable(
-            createQuery<T>(
-                session, selects, wheres, joins, joinsFetch, 
-                orders, groupBy, 1, null, hefesto
-            ).singleResultOrNull
+            list(session, selects, wheres, joins, joinsFetch, orders, groupBy, 1, null, hefesto).firstOrNull()
         )
     }
 
     /**
      * Executes the query and returns a paginated result.
+     * The total is loaded with the given count, unless the window count can be used.
      */
     fun page(
-        session: Session,
+        session: SharedSessionContract,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation,
@@ -144,42 +318,311 @@ internal class HefestoExecutor<T : BaseModel>(
         groupBy: ConstructGroupByImplementation,
         limit: Int,
         offset: Long,
-        hefesto: Hefesto<T>
+        hefesto: Hefesto<T>,
+        count: () -> Long
     ): Page<T> {
-        val total = countResults(session, wheres, joins, groupBy, hefesto)
+        if (queryOptions.windowCount &&
+            selects.isEmpty() && joinsFetch.isEmpty() && groupBy.isEmpty() && isEntity() &&
+            queryOptions.plannedFetches.isEmpty() && queryOptions.entityGraph == null && !duplicatesRows(session, wheres, joins)
+        ) {
+            return pageWithWindowCount(session, selects, wheres, joins, orders, limit, offset, hefesto, count)
+        }
+
+        val total = count()
 
         return Page(
-            createQuery<T>(
-                session, selects, wheres, joins, joinsFetch, 
-                orders, groupBy, limit, offset.toInt(), hefesto
-            ).list(),
+            list(session, selects, wheres, joins, joinsFetch, orders, groupBy, limit, offset.toInt(), hefesto),
             offset,
             total
         )
     }
 
+    /**
+     * True when a join can duplicate the rows of the root, then `count(*) over()` would count the joined rows
+     * and the count query with distinct is used instead, see [CountPlanner].
+     */
+    private fun duplicatesRows(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation
+    ): Boolean {
+        return joins.isNotEmpty() && CountPlanner.plan(entityType(session), joins, wheres, emptyList()).distinct
+    }
+
+    /**
+     * Executes the query loading the total with `count(*) over()` in the same query.
+     * When the page is empty the total can't be read from the rows, so the count query is executed.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun pageWithWindowCount(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        orders: ConstructOrderImplementation,
+        limit: Int,
+        offset: Long,
+        hefesto: Hefesto<T>,
+        count: () -> Long
+    ): Page<T> {
+        val params = mutableMapOf<String, Any?>()
+        val hql = listOf(
+            selects.constructWithWindowCount(hefesto) + " from $table", acronymTable,
+            joins.construct(hefesto),
+            wheres.construct(params, acronymTable),
+            orders.construct()
+        ).joinToString(" ")
+
+        val query = session.createQuery(hql) as Query<Array<Any>>
+        params.forEach { (key, value) -> query.setParameter(key, value) }
+        queryOptions.apply(query)
+        query.maxResults = limit
+        query.firstResult = offset.toInt()
+
+        val rows = query.list()
+        if (rows.isEmpty()) {
+            val total = if (offset == 0L) 0L else count()
+            return Page(emptyList(), offset, total)
+        }
+
+        val results = rows.map { it[0] as T }
+        BatchLoader.load(session, results, queryOptions)
+
+        return Page(results, offset, (rows[0][1] as Number).toLong())
+    }
+
+    /**
+     * Checks if the model is an entity, the window count can't be used with DTOs.
+     */
+    private fun isEntity(): Boolean {
+        return model.isAnnotationPresent(Entity::class.java)
+    }
+
     /**
      * Counts the number of results for the query.
      */
     fun countResults(
-        session: Session,
+        session: SharedSessionContract,
         wheres: ConstructWhereImplementation,
         joins: ConstructJoinImplementation,
         groupBy: ConstructGroupByImplementation,
         hefesto: Hefesto<T>
     ): Long {
-        return createBaseQuery<Long>(
-            session, ConstructSelectImplementation(), wheres, joins,
-            ConstructJoinFetch(), ConstructOrderImplementation(), groupBy,
-            null, null, true, hefesto
-        ).singleResult
+        val params = mutableMapOf<String, Any?>()
+
+        return countResults(session, getCountQuery(session, wheres, joins, groupBy, params, hefesto), params)
+    }
+
+    /**
+     * Counts the number of results of an already generated count query.
+     *
+     * @param query the query generated with [getCountQuery]
+     * @param params the params of the query
+     */
+    fun countResults(session: SharedSessionContract, query: String, params: Map<String, Any?>): Long {
+        val countQuery = session.createQuery(query)
+
+        params.forEach { (key, value) -> countQuery.setParameter(key, value) }
+        queryOptions.apply(countQuery)
+
+        return (countQuery.singleResult as Number).toLong()
+    }
+
+    /**
+     * Generates the HQL count query string.
+     * Only the joins needed are applied, see [CountPlanner].
+     * The root is counted with distinct when a kept join can duplicate the rows.
+     *
+     * A query grouped by one field counts the distinct values of the field in the database, plus one when there is
+     * a group of nulls. A query grouped by several fields counts the rows whose id is the lowest of its group:
+     * ```sql
+     * select count(hefestoGroup) from User hefestoGroup where hefestoGroup.id in
+     *     (select min(user.id) from User user where ... group by user.name, user.email)
+     * ```
+     */
+    fun getCountQuery(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        groupBy: ConstructGroupByImplementation,
+        params: MutableMap<String, Any?>,
+        hefesto: Hefesto<T>
+    ): String {
+        val entity = entityType(session)
+        val plan = CountPlanner.plan(entity, joins, wheres, groupBy)
+        val countJoins = ConstructJoinImplementation()
+        countJoins.addAll(plan.joins)
+
+        if (groupBy.size > 1) {
+            val idName = entity?.let { FetchUtils.idName(it) }
+                ?: throw QueryException("The count grouped by several fields needs a single id in $table")
+            val groups = listOf(
+                "select min($acronymTable.$idName) from $table", acronymTable,
+                countJoins.construct(hefesto),
+                wheres.construct(params, acronymTable),
+                "group by " + groupBy.joinToString(", ") { if (it.field.contains(".")) it.field else "$acronymTable.${it.field}" }
+            ).joinToString(" ")
+
+            return "select count($GROUP_ALIAS) from $table $GROUP_ALIAS where $GROUP_ALIAS.$idName in ($groups)"
+        }
+
+        val select = when {
+            groupBy.size == 1 -> groupBy[0].field.let {
+                "select count(distinct $it) + case when count(*) > count($it) then 1 else 0 end"
+            }
+            plan.distinct -> "select count(distinct $acronymTable)"
+            else -> "select count($acronymTable)"
+        }
+
+        return listOf(
+            "$select from $table", acronymTable,
+            countJoins.construct(hefesto),
+            wheres.construct(params, acronymTable)
+        ).joinToString(" ")
+    }
+
+    /**
+     * Checks if the query has at least one result, selecting a constant with a limit of one row
+     * so the database stops at the first match. The group by doesn't change if a row exists, so it's ignored.
+     */
+    fun exists(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        hefesto: Hefesto<T>
+    ): Boolean {
+        val params = mutableMapOf<String, Any?>()
+        val plan = CountPlanner.plan(entityType(session), joins, wheres, emptyList())
+        val existsJoins = ConstructJoinImplementation()
+        existsJoins.addAll(plan.joins)
+
+        val hql = listOf(
+            "select 1 from $table", acronymTable,
+            existsJoins.construct(hefesto),
+            wheres.construct(params, acronymTable)
+        ).joinToString(" ")
+
+        val query = session.createQuery(hql)
+        params.forEach { (key, value) -> query.setParameter(key, value) }
+        queryOptions.apply(query)
+        query.maxResults = 1
+
+        return query.list().isNotEmpty()
+    }
+
+    /**
+     * Creates the `update ... where` statement of the rows that match the wheres.
+     *
+     * @param set the values to assign
+     * @return the update statement
+     */
+    fun updateQuery(session: SharedSessionContract, wheres: ConstructWhereImplementation, set: UpdateSet): Query<*> {
+        val params = mutableMapOf<String, Any?>()
+        val assignments = set.values.entries.mapIndexed { index, (field, value) ->
+            params["hefestoSet$index"] = value
+            "$acronymTable.$field = :hefestoSet$index"
+        }
+
+        val hql = listOf(
+            "update $table", acronymTable,
+            "set", assignments.joinToString(", "),
+            wheres.construct(params, acronymTable)
+        ).joinToString(" ")
+
+        val query = session.createQuery(hql)
+        params.forEach { (key, value) -> query.setParameter(key, value) }
+        return query
+    }
+
+    /**
+     * Creates the `delete ... where` statement of the rows that match the wheres.
+     *
+     * @return the delete statement
+     */
+    fun deleteQuery(session: SharedSessionContract, wheres: ConstructWhereImplementation): Query<*> {
+        val params = mutableMapOf<String, Any?>()
+        val hql = listOf(
+            "delete from $table", acronymTable,
+            wheres.construct(params, acronymTable)
+        ).joinToString(" ")
+
+        val query = session.createQuery(hql)
+        params.forEach { (key, value) -> query.setParameter(key, value) }
+        return query
+    }
+
+    /**
+     * Creates the query that selects, ordered by id, up to [size] ids greater than [lastId]
+     * of the rows that match the wheres and joins.
+     *
+     * @param size the maximum rows deleted by a chunk
+     * @param lastId the last id of the previous chunk, null for the first chunk
+     * @return the query of the ids
+     */
+    fun chunkIdsQuery(
+        session: SharedSessionContract,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        size: Int,
+        lastId: Any?,
+        hefesto: Hefesto<T>
+    ): Query<*> {
+        val params = mutableMapOf<String, Any?>()
+        val id = "$acronymTable.${idName(session)}"
+        var where = wheres.construct(params, acronymTable)
+
+        if (lastId != null) {
+            params["hefestoLastId"] = lastId
+            where = if (where.isEmpty()) {
+                "where $id > :hefestoLastId"
+            } else {
+                "where (${where.removePrefix("Where")}) and $id > :hefestoLastId"
+            }
+        }
+
+        val idHql = listOf(
+            "select distinct $id from $table", acronymTable,
+            joins.construct(hefesto),
+            where,
+            "order by $id"
+        ).joinToString(" ")
+
+        val idQuery = session.createQuery(idHql)
+        params.forEach { (key, value) -> idQuery.setParameter(key, value) }
+        queryOptions.apply(idQuery)
+        idQuery.maxResults = size
+
+        return idQuery
+    }
+
+    /**
+     * Creates the `delete ... where id in` statement of the rows with the given ids.
+     *
+     * @param ids the ids selected by [chunkIdsQuery]
+     * @return the delete statement
+     */
+    fun deleteByIdsQuery(session: SharedSessionContract, ids: List<*>): Query<*> {
+        return session.createQuery("delete from $table $acronymTable where $acronymTable.${idName(session)} in (:hefestoIds)")
+            .setParameter("hefestoIds", ids)
+    }
+
+    private fun idName(session: SharedSessionContract): String {
+        return entityType(session)?.let { FetchUtils.idName(it) }
+            ?: throw QueryException("deleteInChunks needs a single id in $table")
+    }
+
+    /**
+     * Finds the metamodel of the queried entity, null if it's not found.
+     */
+    private fun entityType(session: SharedSessionContract): ManagedType<*>? {
+        return (session as SharedSessionContractImplementor).factory.metamodel.entities.firstOrNull { it.name == table }
     }
 
     /**
      * Executes the query and returns the first result as a custom type.
      */
     fun <R> findFirstFor(
-        session: Session,
+        session: SharedSessionContract,
         resultClass: Class<R>,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
@@ -207,7 +650,7 @@ internal class HefestoExecutor<T : BaseModel>(
      * Executes the query and returns a list of results as a custom type.
      */
     fun <R> findFor(
-        session: Session,
+        session: SharedSessionContract,
         resultClass: Class<R>,
         selects: ConstructSelectImplementation,
         wheres: ConstructWhereImplementation,
@@ -228,6 +671,28 @@ internal class HefestoExecutor<T : BaseModel>(
         ).resultList
     }
 
+    /**
+     * Selects only the given fields without creating the entities or transforming the rows.
+     * The rows are the values when one field is selected, otherwise an array with the value of every field.
+     * The fetches are ignored, there is no entity to fetch them into.
+     */
+    fun pluck(
+        session: SharedSessionContract,
+        selects: ConstructSelectImplementation,
+        wheres: ConstructWhereImplementation,
+        joins: ConstructJoinImplementation,
+        orders: ConstructOrderImplementation,
+        groupBy: ConstructGroupByImplementation,
+        limit: Int?,
+        offset: Int?,
+        hefesto: Hefesto<T>
+    ): List<Any?> {
+        return createBaseQuery<Any?>(
+            session, selects, wheres, joins, ConstructJoinFetch(),
+            orders, groupBy, limit, offset, false, hefesto
+        ).resultList
+    }
+
     /**
      * Generates the HQL query string.
      */
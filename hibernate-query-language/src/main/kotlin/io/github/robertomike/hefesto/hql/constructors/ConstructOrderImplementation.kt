@@ -2,6 +2,7 @@ package io.github.robertomike.hefesto.hql.constructors
 
 import io.github.robertomike.hefesto.actions.Order
 import io.github.robertomike.hefesto.constructors.ConstructOrder
+import io.github.robertomike.hefesto.enums.Sort
 
 /**
  * HQL implementation of ORDER BY clause construction.
@@ -38,6 +39,33 @@ class ConstructOrderImplementation : ConstructOrder() {
         return ordersQuery.toString()
     }
 
+    /**
+     * Constructs the GROUP BY of the id and the ORDER BY, so every id is returned once and the limit counts ids.
+     * The fields of the root are added to the group by, the fields of the joins are ordered
+     * by their minimum (ASC) or maximum (DESC) value in the group.
+     *
+     * @param acronymTable the alias of the root entity
+     * @param id the id of the root entity with its alias
+     * @return the HQL clauses (e.g., "group by u.id, u.name order by u.name ASC, max(pets.name) DESC")
+     */
+    fun constructGroupedById(acronymTable: String, id: String): String {
+        val groups = mutableListOf(id)
+        val ordersQuery = items.map { value ->
+            val field = value.field.removePrefix("$acronymTable.")
+
+            if (field.contains(".")) {
+                val aggregate = if (value.sort == Sort.DESC) "max" else "min"
+                "$aggregate($field) ${value.sort.name}"
+            } else {
+                groups.add("$acronymTable.$field")
+                "$acronymTable.$field ${value.sort.name}"
+            }
+        }
+
+        val groupBy = "group by " + groups.joinToString(", ")
+        return if (ordersQuery.isEmpty()) groupBy else "$groupBy order by " + ordersQuery.joinToString(", ")
+    }
+
     fun apply(value: Order): String {
         return "${value.field} ${value.sort.name}"
     }
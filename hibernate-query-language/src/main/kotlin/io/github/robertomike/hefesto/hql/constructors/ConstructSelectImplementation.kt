@@ -5,6 +5,7 @@ import io.github.robertomike.hefesto.hql.builders.Hefesto
 import io.github.robertomike.hefesto.constructors.ConstructSelect
 import io.github.robertomike.hefesto.enums.SelectOperator
 import io.github.robertomike.hefesto.exceptions.QueryException
+import io.github.robertomike.hefesto.utils.HefestoFunctions
 
 /**
  * HQL implementation of SELECT clause construction.
@@ -44,6 +45,17 @@ class ConstructSelectImplementation : ConstructSelect() {
         return prefix + select
     }
 
+    /**
+     * Constructs the SELECT clause for the root entity and the total of rows with `count(*) over()`,
+     * used to load a page and its total in the same query.
+     *
+     * @param builder the Hefesto builder containing table alias information
+     * @return the HQL SELECT clause string (e.g., "select user, hefesto_count_over()")
+     */
+    fun constructWithWindowCount(builder: Hefesto<*>): String {
+        return "$prefix${builder.acronymTable}, ${HefestoFunctions.COUNT_OVER}()"
+    }
+
     private fun getSelectField(select: Select): String {
         var field = select.field
 
@@ -7,6 +7,8 @@ import io.github.robertomike.hefesto.enums.Operator
 import io.github.robertomike.hefesto.exceptions.QueryException
 import io.github.robertomike.hefesto.exceptions.UnsupportedOperationException
 import io.github.robertomike.hefesto.hql.actions.wheres.WhereRaw
+import io.github.robertomike.hefesto.utils.HefestoFunctions
+import org.hibernate.query.TypedParameterValue
 
 /**
  * HQL implementation of WHERE clause construction.
@@ -38,6 +40,7 @@ class ConstructWhereImplementation : ConstructWhere() {
      * @return the HQL WHERE clause string (e.g., "Where user.name = :param1 AND user.age > :param2")
      */
     fun construct(params: MutableMap<String, Any?>, acronymTable: String = ""): String {
+        clearPlans()
         this.params = params
         this.acronymTable = acronymTable
 
@@ -84,7 +87,10 @@ class ConstructWhereImplementation : ConstructWhere() {
         if (where is WhereExist) {
             wheresQuery.add(if (where.exists) "exists" else "not exists")
             wheresQuery.add("(")
-            wheresQuery.add((where.subQuery as Hefesto<*>).getSubQuery(params))
+            val subQuery = where.subQuery as Hefesto<*>
+            subQuery.wheres.arrayParameters = arrayParameters
+            subQuery.wheres.stagedSlots = stagedSlots
+            wheresQuery.add(subQuery.getSubQuery(params))
             wheresQuery.add(")")
             return
         }
@@ -151,20 +157,49 @@ class ConstructWhereImplementation : ConstructWhere() {
             Operator.IN,
             Operator.NOT_IN -> {
                 if (where.value is Hefesto<*>) {
-                    wheresQuery.add("$field $operator (${(where.value as Hefesto<*>).getSubQuery(params)})")
+                    val subQuery = where.value as Hefesto<*>
+                    subQuery.wheres.arrayParameters = arrayParameters
+                    subQuery.wheres.stagedSlots = stagedSlots
+                    wheresQuery.add("$field $operator (${subQuery.getSubQuery(params)})")
                     return
                 }
 
-                wheresQuery.add("$field $operator ($nameParamWhere)")
+                val type = if (where is WhereInArray) HefestoFunctions.arrayType(where.values) else null
+                if (type != null) {
+                    if (!arrayParameters) {
+                        throw QueryException("whereInArray binds the values as an array, it's only supported on PostgreSQL and H2")
+                    }
 
-                val values: Any = when {
-                    value?.javaClass?.isArray == true -> (value as Array<*>).toList()
+                    planArray(where, (where as WhereInArray).values)
+                    wheresQuery.add("${HefestoFunctions.ANY}($field, $nameParamWhere) = true")
+                    params[nameParam] = TypedParameterValue(type, HefestoFunctions.arrayParameter(where.values))
+                    return
+                }
+
+                val slot = if (where is WhereStaged) stagedSlots[where] else null
+                val staged = if (slot != null) HefestoFunctions.stagedFunction((where as WhereStaged).values, slot) else null
+                if (staged != null) {
+                    planStaged(where, (where as WhereStaged).values)
+                    wheresQuery.add("$staged($field) = true")
+                    return
+                }
+
+                val values: List<Any?> = when {
+                    value?.javaClass?.isArray == true -> (value as Array<*>).asList()
+                    value is List<*> -> value
                     value is Collection<*> -> ArrayList(value)
-                    where.value is Hefesto<*> -> (where.value as Hefesto<*>).getSubQuery(params)
                     else -> throw UnsupportedOperationException("Invalid class: ${value?.javaClass}")
                 }
 
-                params[nameParam] = values
+                val chunks = planInList(where, values).chunks
+                if (chunks.size == 1) {
+                    wheresQuery.add("$field $operator ($nameParamWhere)")
+                    params[nameParam] = chunks[0]
+                } else {
+                    val join = if (where.operator == Operator.IN) " or " else " and "
+                    wheresQuery.add(chunks.indices.joinToString(join, "(", ")") { "$field $operator (${nameParamWhere}_$it)" })
+                    chunks.forEachIndexed { index, chunk -> params["${nameParam}_$index"] = chunk }
+                }
                 param = false
             }
 
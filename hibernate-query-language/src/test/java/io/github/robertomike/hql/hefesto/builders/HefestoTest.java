@@ -1,14 +1,26 @@
 package io.github.robertomike.hql.hefesto.builders;
 
+import io.github.robertomike.hefesto.builders.BaseBuilder;
+import io.github.robertomike.hefesto.exceptions.QueryException;
 import io.github.robertomike.hefesto.hql.builders.Hefesto;
 import io.github.robertomike.hefesto.enums.JoinOperator;
+import io.github.robertomike.hefesto.enums.Sort;
+import io.github.robertomike.hefesto.utils.InListPlan;
+import io.github.robertomike.hefesto.utils.InListStrategy;
 import io.github.robertomike.hql.BaseTest;
 import io.github.robertomike.hql.hefesto.models.Pet;
 import io.github.robertomike.hql.hefesto.models.User;
 import io.github.robertomike.hql.hefesto.models.UserPet;
+import jakarta.persistence.criteria.JoinType;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -41,6 +53,22 @@ class HefestoTest {
         assertFalse(user.get().getAddresses().isEmpty());
     }
 
+    @Test
+    void loadUsersStateless() {
+        var users = Hefesto.make(User.class).stateless().get();
+        var expected = Hefesto.make(User.class).countResults();
+
+        assertEquals(expected, users.size());
+    }
+
+    @Test
+    void loadUsersReadOnly() {
+        var users = Hefesto.make(User.class).readOnly().get();
+
+        assertNotNull(users);
+        assertFalse(users.isEmpty());
+    }
+
     @Test
     void loadPets() {
         var pets = Hefesto.make(Pet.class).get();
@@ -57,6 +85,18 @@ class HefestoTest {
         assertFalse(list.isEmpty());
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    void createQueryWithProvidedSession() {
+        var expected = Hefesto.make(User.class).where("id", 1L).get();
+        List<User> users = Hefesto.make(User.class).where("id", 1L).<User>createQuery().list();
+        var withQuery = Hefesto.make(User.class).where("id", 1L).<User, List<User>>withQuery(query -> query.list());
+
+        assertEquals(expected.size(), users.size());
+        assertEquals(expected.size(), withQuery.size());
+        assertEquals(1, Hefesto.make(User.class).where("id", 1L).createBaseQuery().list().size());
+    }
+
     @Test
     void paginateUsers() {
         var list = Hefesto.make(User.class).page(10, 1);
@@ -67,6 +107,351 @@ class HefestoTest {
         assertTrue(list.getTotal() > 1);
     }
 
+    @Test
+    void paginateUsersInParallel() {
+        var expected = Hefesto.make(User.class).page(10, 1);
+        var list = Hefesto.make(User.class).pageParallel(10, 1);
+
+        assertEquals(expected.getTotal(), list.getTotal());
+        assertEquals(expected.getData().size(), list.getData().size());
+        assertEquals(1, list.getPage());
+    }
+
+    @Test
+    void countWithGroupBy() {
+        var total = Hefesto.make(User.class).groupBy("email").countResults();
+
+        assertEquals(8, total);
+
+        var emails = new HashSet<>(Hefesto.make(User.class).pluck("email", String.class));
+
+        assertEquals(emails.size(), total);
+        assertEquals(8, Hefesto.make(User.class).groupBy("email", "name").countResults());
+        assertEquals(4, Hefesto.make(User.class).groupBy("role", "active").countResults());
+        assertEquals(2, Hefesto.make(User.class).where("active", true).groupBy("role", "active").countResults());
+    }
+
+    @Test
+    void countWithToManyJoin() {
+        var expected = Hefesto.make(User.class).countResults();
+        var total = Hefesto.make(User.class).join("addresses", JoinOperator.LEFT).countResults();
+
+        assertEquals(expected, total);
+    }
+
+    @Test
+    void paginateWithWindowCount() {
+        var expected = Hefesto.make(User.class).orderBy("id").page(3, 3);
+        var list = Hefesto.make(User.class).orderBy("id").windowCount().page(3, 3);
+
+        assertEquals(expected.getTotal(), list.getTotal());
+        assertEquals(expected.getData().size(), list.getData().size());
+        assertEquals(expected.getData().get(0).getId(), list.getData().get(0).getId());
+
+        var empty = Hefesto.make(User.class).windowCount().page(3, 100);
+
+        assertTrue(empty.getData().isEmpty());
+        assertEquals(expected.getTotal(), empty.getTotal());
+
+        var joined = Hefesto.make(User.class).join("addresses", JoinOperator.LEFT).windowCount().page(3, 0);
+
+        assertEquals(expected.getTotal(), joined.getTotal());
+    }
+
+    @Test
+    void paginateWithCollectionFetch() {
+        var page = Hefesto.make(User.class)
+                .with("addresses", JoinType.LEFT)
+                .orderBy("id")
+                .page(2, 0);
+
+        assertEquals(2, page.getData().size());
+        assertEquals(1L, page.getData().get(0).getId());
+        assertEquals(2L, page.getData().get(1).getId());
+        assertEquals(2, page.getData().get(0).getAddresses().size());
+
+        var withAddresses = Hefesto.make(User.class)
+                .with("addresses")
+                .orderBy("id")
+                .limit(2)
+                .get();
+
+        assertEquals(2, withAddresses.size());
+        assertEquals(1L, withAddresses.get(0).getId());
+        assertEquals(5L, withAddresses.get(1).getId());
+    }
+
+    @Test
+    void paginateWithCollectionFetchOverToManyJoin() {
+        var first = Hefesto.make(User.class)
+                .with("addresses", JoinType.LEFT)
+                .join("pets", JoinOperator.LEFT)
+                .orderBy("id")
+                .page(3, 0);
+
+        assertEquals(8, first.getTotal());
+        assertEquals(List.of(1L, 2L, 3L), first.getData().stream().map(User::getId).toList());
+
+        var second = Hefesto.make(User.class)
+                .with("addresses", JoinType.LEFT)
+                .join("pets", JoinOperator.LEFT)
+                .orderBy("id")
+                .page(3, 1);
+
+        assertEquals(List.of(2L, 3L, 4L), second.getData().stream().map(User::getId).toList());
+
+        var byPetName = Hefesto.make(User.class)
+                .with("addresses", JoinType.LEFT)
+                .join("pets", JoinOperator.LEFT)
+                .orderBy("pets.name", Sort.DESC)
+                .limit(3)
+                .get();
+
+        assertEquals(List.of(3L, 1L, 2L), byPetName.stream().map(User::getId).toList());
+    }
+
+    @Test
+    void loadRelationshipsInBatch() {
+        var users = Hefesto.make(User.class)
+                .withBatch(2, "pets.users", "addresses")
+                .orderBy("id")
+                .get();
+
+        var user = users.get(0);
+
+        assertTrue(Hibernate.isInitialized(user.getPets()));
+        assertTrue(Hibernate.isInitialized(user.getAddresses()));
+        assertEquals(2, user.getPets().size());
+        assertEquals(2, user.getAddresses().size());
+        user.getPets().forEach(pet -> assertTrue(Hibernate.isInitialized(pet.getUsers())));
+    }
+
+    @Test
+    void loadPlannedRelationships() {
+        var query = Hefesto.make(User.class)
+                .withPlanned("pets", "addresses", "pets.users")
+                .orderBy("id");
+        var user = query.get().get(0);
+        var plan = query.getFetchPlan();
+
+        assertEquals(1, plan.getJoinFetches().size());
+        assertEquals("pets", plan.getJoinFetches().get(0).getRelationship());
+        assertEquals(List.of("addresses", "pets.users"), plan.getBatchFetches());
+        assertEquals(4, plan.getDecisions().size());
+
+        assertTrue(Hibernate.isInitialized(user.getPets()));
+        assertTrue(Hibernate.isInitialized(user.getAddresses()));
+        assertEquals(2, user.getPets().size());
+        assertEquals(2, user.getAddresses().size());
+    }
+
+    @Test
+    void loadWithFetchGraph() {
+        var query = Hefesto.make(User.class)
+                .fetchGraph(graph -> graph.add("pets", "addresses"))
+                .orderBy("id");
+        var user = query.get().get(0);
+
+        assertTrue(Hibernate.isInitialized(user.getPets()));
+        assertTrue(Hibernate.isInitialized(user.getAddresses()));
+        assertEquals(2, user.getPets().size());
+        assertEquals(Hefesto.make(User.class).countResults(), query.countResults());
+    }
+
+    @Test
+    void findAllByIds() {
+        var users = Hefesto.make(User.class).findAllByIds(List.of(3L, 1, 99L, 2L));
+
+        assertEquals(3, users.size());
+        assertEquals(3L, users.get(0).getId());
+        assertEquals(1L, users.get(1).getId());
+        assertEquals(2L, users.get(2).getId());
+
+        var filtered = Hefesto.make(User.class)
+                .where("name", "petto")
+                .findAllByIds(List.of(1L, 2L));
+
+        assertEquals(1, filtered.size());
+        assertEquals(2L, filtered.get(0).getId());
+    }
+
+    @Test
+    void existUsers() {
+        assertTrue(Hefesto.make(User.class).exist());
+        assertTrue(Hefesto.make(User.class).existBy("name", "petto"));
+        assertFalse(Hefesto.make(User.class).existBy("name", "nobody"));
+        assertTrue(Hefesto.make(User.class).join("addresses").groupBy("email").exist());
+    }
+
+    @Test
+    void updateUsers() {
+        var session = (Session) BaseBuilder.getSessionProvider().getSession();
+
+        var transaction = session.beginTransaction();
+        try {
+            var rows = Hefesto.make(User.class)
+                    .where("name", "petto")
+                    .evictOnWrite()
+                    .update(set -> set.value("photo", "petto.jpg"));
+
+            assertEquals(1, rows);
+            assertTrue(Hefesto.make(User.class).where("photo", "petto.jpg").exist());
+        } finally {
+            transaction.rollback();
+        }
+
+        assertFalse(Hefesto.make(User.class).where("photo", "petto.jpg").exist());
+    }
+
+    @Test
+    void deletePets() {
+        var session = (Session) BaseBuilder.getSessionProvider().getSession();
+
+        var transaction = session.beginTransaction();
+        try {
+            var rows = Hefesto.make(Pet.class)
+                    .whereNotIn("id", UserPet.class, subQuery -> subQuery.addSelect("pet.id"))
+                    .delete();
+
+            assertEquals(2, rows);
+            assertEquals(4, Hefesto.make(Pet.class).countResults());
+        } finally {
+            transaction.rollback();
+        }
+
+        transaction = session.beginTransaction();
+        try {
+            var rows = Hefesto.make(Pet.class)
+                    .whereNotIn("id", UserPet.class, subQuery -> subQuery.addSelect("pet.id"))
+                    .deleteInChunks(1);
+
+            assertEquals(2, rows);
+            assertEquals(4, Hefesto.make(Pet.class).countResults());
+        } finally {
+            transaction.rollback();
+        }
+    }
+
+    @Test
+    void whereInWithInListStrategy() {
+        var plain = Hefesto.make(User.class).whereIn("id", 1L, 2L, 3L);
+
+        assertEquals(3, plain.get().size());
+        assertEquals(InListPlan.Type.PLAIN, plain.getInListPlans().get(0).getType());
+
+        BaseBuilder.setInListStrategy(new InListStrategy());
+        try {
+            var padded = Hefesto.make(User.class).whereIn("id", 1L, 2L, 3L);
+
+            assertEquals(3, padded.get().size());
+            assertEquals(InListPlan.Type.PADDED, padded.getInListPlans().get(0).getType());
+            assertEquals(4, padded.getInListPlans().get(0).getChunks().get(0).size());
+
+            padded.getWheres().clear();
+            padded.whereIn("id", 4L, 5L);
+            padded.get();
+
+            assertEquals(1, padded.getInListPlans().size());
+            assertEquals(2, padded.getInListPlans().get(0).getSize());
+        } finally {
+            BaseBuilder.setInListStrategy(null);
+        }
+
+        BaseBuilder.setInListStrategy(new InListStrategy(true, 2));
+        try {
+            var chunked = Hefesto.make(User.class).whereIn("id", 1L, 2L, 3L, 4L, 5L);
+
+            assertEquals(5, chunked.get().size());
+            assertEquals(InListPlan.Type.CHUNKED, chunked.getInListPlans().get(0).getType());
+            assertEquals(3, chunked.getInListPlans().get(0).getChunks().size());
+
+            assertEquals(3, Hefesto.make(User.class).whereNotIn("id", 1L, 2L, 3L, 4L, 5L).get().size());
+        } finally {
+            BaseBuilder.setInListStrategy(null);
+        }
+    }
+
+    @Test
+    void whereInArrayNeedsArrays() {
+        var query = Hefesto.make(User.class).whereInArray("id", new long[]{1, 2, 3});
+
+        assertThrows(QueryException.class, query::get);
+    }
+
+    @Test
+    void whereInStaged() {
+        var query = Hefesto.make(User.class).whereInStaged("id", List.of(1L, 2L, 3L));
+
+        assertEquals(3, query.get().size());
+        assertEquals(InListPlan.Type.STAGED, query.getInListPlans().get(0).getType());
+        assertEquals(3, query.countResults());
+    }
+
+    @Test
+    void twoWheresInStaged() {
+        var query = Hefesto.make(User.class)
+                .whereInStaged("id", List.of(1L, 2L, 3L, 4L))
+                .whereInStaged("name", List.of("test", "javi", "gabi"));
+
+        assertEquals(2, query.get().size());
+        assertEquals(2, query.countResults());
+    }
+
+    @Test
+    void streamWhereInStaged() {
+        try (var users = Hefesto.make(User.class).whereInStaged("id", List.of(1L, 2L, 3L)).stream()) {
+            var nested = Hefesto.make(User.class).whereInStaged("id", List.of(4L, 5L)).get();
+
+            assertEquals(2, nested.size());
+            assertEquals(3, users.count());
+        }
+
+        assertEquals(1, Hefesto.make(User.class).whereInStaged("id", List.of(6L)).get().size());
+    }
+
+    @Test
+    void whereInPrimitiveArrays() {
+        assertEquals(3, Hefesto.make(User.class).whereIn("id", new long[]{1, 2, 3}).get().size());
+        assertEquals(5, Hefesto.make(User.class).whereNotIn("id", new long[]{1, 2, 3}).get().size());
+    }
+
+    @Test
+    void pluckUsers() {
+        List<Long> ids = Hefesto.make(User.class).orderBy("id").pluck("id", Long.class);
+
+        assertEquals(8, ids.size());
+        assertEquals(1L, ids.get(0));
+        assertArrayEquals(
+                new long[]{1, 2, 3},
+                Hefesto.make(User.class).whereIn("id", new long[]{1, 2, 3}).orderBy("id").pluckLongs("id")
+        );
+
+        Map<Long, String> names = Hefesto.make(User.class).whereIn("id", new long[]{1, 2}).pluckMap("id", "name");
+
+        assertEquals(2, names.size());
+        assertNotNull(names.get(1L));
+
+        List<Integer> intIds = Hefesto.make(User.class).orderBy("id").pluck("id", Integer.class);
+
+        assertEquals(1, intIds.get(0));
+        assertThrows(QueryException.class, () -> Hefesto.make(User.class).pluck("name", Long.class));
+    }
+
+    @Test
+    void sliceUsers() {
+        var first = Hefesto.make(User.class).orderBy("id").slice(3);
+
+        assertEquals(3, first.getData().size());
+        assertTrue(first.getHasNext());
+
+        var last = Hefesto.make(User.class).orderBy("id").slice(3, 6);
+
+        assertEquals(2, last.getData().size());
+        assertFalse(last.getHasNext());
+
+        assertThrows(QueryException.class, () -> Hefesto.make(User.class).slice(3, Integer.MAX_VALUE + 1L));
+    }
+
     @Test
     void findFirstBy() {
         var list = Hefesto.make(User.class)
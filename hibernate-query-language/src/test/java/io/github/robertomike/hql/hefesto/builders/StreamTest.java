@@ -0,0 +1,72 @@
+package io.github.robertomike.hql.hefesto.builders;
+
+import io.github.robertomike.hefesto.builders.BaseBuilder;
+import io.github.robertomike.hefesto.hql.builders.Hefesto;
+import io.github.robertomike.hql.BaseTest;
+import io.github.robertomike.hql.hefesto.models.Pet;
+import io.github.robertomike.hql.hefesto.models.User;
+import io.github.robertomike.hql.hefesto.models.alias.UserWithAddress;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(BaseTest.class)
+class StreamTest {
+    @Test
+    void streamUsers() {
+        var expected = Hefesto.make(User.class).countResults();
+
+        try (var users = Hefesto.make(User.class).fetchSize(2).clearEvery(2).stream()) {
+            assertEquals(expected, users.count());
+        }
+    }
+
+    @Test
+    void clearEveryOnlyEvictsTheStreamedRows() {
+        var session = (Session) BaseBuilder.getSessionProvider().getSession();
+        var pet = Hefesto.make(Pet.class).findFirstById(1L).orElseThrow();
+
+        try (var users = Hefesto.make(User.class).fetchSize(2).clearEvery(1).stream()) {
+            var first = users.findFirst().orElseThrow();
+
+            assertTrue(session.contains(first));
+        }
+
+        try (var users = Hefesto.make(User.class).fetchSize(2).clearEvery(1).stream()) {
+            var read = users.limit(2).toList();
+
+            assertFalse(session.contains(read.get(0)));
+        }
+
+        assertTrue(session.contains(pet));
+    }
+
+    @Test
+    void streamProjection() {
+        try (var rows = new Hefesto<>(User.class, UserWithAddress.class)
+                .addSelect("name", "userName")
+                .join("addresses")
+                .addSelect("addresses.address", "address")
+                .where("id", 1L)
+                .stream()) {
+            var list = rows.collect(Collectors.toList());
+
+            assertFalse(list.isEmpty());
+            assertEquals("test", list.get(0).getUserName());
+            assertEquals("calle del sol", list.get(0).getAddress());
+        }
+    }
+
+    @Test
+    void streamStateless() {
+        var expected = Hefesto.make(User.class).get().size();
+
+        try (var users = Hefesto.make(User.class).stateless().stream()) {
+            assertEquals(expected, users.count());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.robertomike.hefesto.actions
+
+/**
+ * The values assigned by a bulk update.
+ *
+ * ```java
+ * int rows = Hefesto.make(User.class)
+ *     .where("status", Status.PENDING)
+ *     .update(set -> set.value("status", Status.ACTIVE).value("verified", true));
+ * ```
+ */
+class UpdateSet {
+    private val assignments = LinkedHashMap<String, Any?>()
+
+    /**
+     * The fields and the values to assign, in the order they were added
+     */
+    val values: Map<String, Any?>
+        get() = assignments
+
+    /**
+     * Assigns a value to the field, null sets the field to null.
+     *
+     * @param field the field of the entity
+     * @param value the new value
+     * @return the same instance
+     */
+    fun value(field: String, value: Any?): UpdateSet {
+        assignments[field] = value
+        return this
+    }
+}
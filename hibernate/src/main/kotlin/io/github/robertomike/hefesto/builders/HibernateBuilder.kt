@@ -0,0 +1,478 @@
+package io.github.robertomike.hefesto.builders
+
+import io.github.robertomike.hefesto.actions.Order
+import io.github.robertomike.hefesto.actions.UpdateSet
+import io.github.robertomike.hefesto.actions.wheres.WhereStaged
+import io.github.robertomike.hefesto.constructors.ConstructGroupBy
+import io.github.robertomike.hefesto.constructors.ConstructJoin
+import io.github.robertomike.hefesto.constructors.ConstructOrder
+import io.github.robertomike.hefesto.constructors.ConstructSelect
+import io.github.robertomike.hefesto.constructors.ConstructWhere
+import io.github.robertomike.hefesto.enums.Operator
+import io.github.robertomike.hefesto.exceptions.QueryException
+import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.sessions.SessionFactoryProvider
+import io.github.robertomike.hefesto.sessions.SessionFactorySessionProvider
+import io.github.robertomike.hefesto.sessions.SessionProvider
+import io.github.robertomike.hefesto.sessions.StaticSessionProvider
+import io.github.robertomike.hefesto.utils.BulkStatements
+import io.github.robertomike.hefesto.utils.CastUtils
+import io.github.robertomike.hefesto.utils.FetchUtils
+import io.github.robertomike.hefesto.utils.HefestoFunctions
+import io.github.robertomike.hefesto.utils.IdLoader
+import io.github.robertomike.hefesto.utils.KeysetValues
+import io.github.robertomike.hefesto.utils.Page
+import io.github.robertomike.hefesto.utils.QueryOptions
+import io.github.robertomike.hefesto.utils.SharedMethods
+import io.github.robertomike.hefesto.utils.StagedValues
+import org.hibernate.Session
+import org.hibernate.SessionFactory
+import org.hibernate.SharedSessionContract
+import org.hibernate.query.Query
+import java.util.*
+import java.util.function.Consumer
+import java.util.stream.Stream
+
+/**
+ * Base of the Hibernate builders, shared by the criteria and HQL implementations.
+ *
+ * Resolves the session of every execution, applies the [QueryOptions] and stages the values of the `whereInStaged`,
+ * so the implementations only build their queries and statements.
+ *
+ * @param <Model>   define the model to return
+ * @param <WHERE>   define the class where that is implemented
+ * @param <JOIN>    define the class join that is implemented
+ * @param <ORDER>   define the class order that is implemented
+ * @param <SELECT>  define the class select that is implemented
+ * @param <GROUP>   define the class group by that is implemented
+ * @param <BUILDER> define the builder
+ */
+@Suppress("UNCHECKED_CAST")
+abstract class HibernateBuilder<
+        Model : BaseModel,
+        WHERE : ConstructWhere,
+        JOIN : ConstructJoin,
+        ORDER : ConstructOrder,
+        SELECT : ConstructSelect,
+        GROUP : ConstructGroupBy,
+        BUILDER : HibernateBuilder<Model, WHERE, JOIN, ORDER, SELECT, GROUP, BUILDER>
+        >(model: Class<Model>) : BaseBuilder<Model, Session, WHERE, JOIN, ORDER, SELECT, GROUP, BUILDER>(model),
+    SharedMethods<BUILDER> {
+
+    override val queryOptions = QueryOptions()
+
+    /**
+     * The entity of the queries, the model or the entity of a DTO builder
+     */
+    protected abstract val queriedModel: Class<*>
+
+    /**
+     * True when the query returns the entities of the model, without selects
+     */
+    protected abstract fun isEntityQuery(): Boolean
+
+    /**
+     * Executes the query with the given limit and offset.
+     */
+    protected abstract fun list(session: SharedSessionContract, limit: Int?, offset: Int?): List<Model>
+
+    /**
+     * Creates the count query in the session of the execution,
+     * the returned function executes it in any session of the same factory.
+     */
+    protected abstract fun prepareCount(session: SharedSessionContract): (SharedSessionContract) -> Long
+
+    /**
+     * Creates the update statement of the rows that match the wheres.
+     */
+    protected abstract fun updateQuery(session: SharedSessionContract, set: UpdateSet): Query<*>
+
+    /**
+     * Creates the delete statement of the rows that match the wheres.
+     */
+    protected abstract fun deleteQuery(session: SharedSessionContract): Query<*>
+
+    /**
+     * Creates the query that selects, ordered by id, the ids after [lastId] of the next chunk of [deleteInChunks].
+     */
+    protected abstract fun chunkIdsQuery(session: SharedSessionContract, size: Int, lastId: Any?): Query<*>
+
+    /**
+     * Creates the delete statement of the rows with the given ids.
+     */
+    protected abstract fun deleteByIdsQuery(session: SharedSessionContract, ids: List<*>): Query<*>
+
+    /**
+     * Selects only the given fields without creating the entities.
+     * The rows are the values when one field is selected, otherwise an array with the value of every field.
+     */
+    protected abstract fun pluckRows(session: SharedSessionContract, fields: List<String>): List<Any?>
+
+    /**
+     * Finds the entity by id through the session, so the persistence context and the second-level cache are checked first.
+     * When the builder has wheres, joins, selects or fetches a query is used instead.
+     *
+     * @param value the id
+     * @return an Optional with the entity found
+     */
+    override fun findFirstById(value: Any?): Optional<Model> {
+        if (value == null || !canLoadById()) {
+            return super.findFirstById(value)
+        }
+        return execute { Optional.ofNullable(IdLoader.find(it, model, value, queryOptions)) }
+    }
+
+    /**
+     * Finds the entities by ids with `byMultipleIds`, which loads them in batches and checks
+     * the persistence context and the second-level cache first. The results follow the order of the ids.
+     * When the builder has wheres, joins, selects or fetches, or uses a StatelessSession, a query with `IN` is used instead.
+     *
+     * @param ids the ids
+     * @return the entities found
+     */
+    override fun findAllByIds(ids: Collection<*>): List<Model> {
+        return loadAllByIds(ids, null)
+    }
+
+    /**
+     * Same as [findAllByIds] loading at most the given number of ids in every query.
+     *
+     * @param ids the ids
+     * @param batchSize the maximum number of ids per query
+     * @return the entities found
+     */
+    fun findAllByIds(ids: Collection<*>, batchSize: Int): List<Model> {
+        return loadAllByIds(ids, batchSize)
+    }
+
+    private fun loadAllByIds(ids: Collection<*>, batchSize: Int?): List<Model> {
+        if (ids.isEmpty()) {
+            return emptyList()
+        }
+        if (canLoadById() && !queryOptions.stateless) {
+            return withSession { IdLoader.findAll(it, model, ids, queryOptions, batchSize) }
+        }
+
+        where("id", Operator.IN, ids.toList())
+        return execute {
+            val results = list(it, limit, offset)
+            if (isEntityQuery()) IdLoader.sortByIds(it, model, results, ids) else results
+        }
+    }
+
+    /**
+     * The identifier of the queried entity read from the metamodel, "id" when the entity doesn't have a single id.
+     * The metamodel is read from the factory of the provider, a session is only opened when the provider doesn't expose it.
+     */
+    override fun keysetIdName(): String {
+        val model = providedSessionFactory()?.metamodel?.entity(queriedModel)
+            ?: withSession { FetchUtils.factoryOf(it).metamodel.entity(queriedModel) }
+
+        return FetchUtils.idName(model) ?: "id"
+    }
+
+    /**
+     * Reads the values of the entities through the metamodel, so the proxies can be used as last row,
+     * see [KeysetValues]. The DTOs are read by reflection.
+     * A session is only used to load a detached proxy or when the provider doesn't expose its factory.
+     */
+    override fun keysetValuesOf(row: Any, keysetOrders: List<Order>): List<Any?> {
+        if (!isEntityQuery()) {
+            return super.keysetValuesOf(row, keysetOrders)
+        }
+
+        val factory = providedSessionFactory()
+            ?: return withSession { KeysetValues.valuesOf(it, row, keysetOrders) }
+
+        return KeysetValues.valuesOf(factory, row, keysetOrders) { type, id ->
+            withSession { KeysetValues.load(it, type, id) }
+        }
+    }
+
+    private fun canLoadById(): Boolean {
+        return isEntityQuery() && groupBy.isEmpty() && wheres.isEmpty() &&
+                joins.isEmpty() && joinsFetch.isEmpty() && !queryOptions.changesLoading
+    }
+
+    /**
+     * Retrieves a page of results running the count and the data query at the same time.
+     * The count runs in the async executor with its own session, so it only sees committed data.
+     *
+     * The count query is created with its parameters before the fork, the async side only executes it
+     * and never reads the builder, which keeps constructing the data query in the current thread.
+     * The `whereInStaged` can't be used, the staged table only exists in the connection of the data query.
+     *
+     * ```java
+     * Page<User> page = Hefesto.make(User.class)
+     *     .where("status", Status.ACTIVE)
+     *     .orderBy("name")
+     *     .pageParallel(20, 40);
+     * ```
+     *
+     * @param limit the maximum number of results to retrieve
+     * @param offset the starting position of the results
+     * @return a Page object containing the retrieved results, the offset used, and the total number of results
+     */
+    fun pageParallel(limit: Int, offset: Long): Page<Model> {
+        if (StagedValues.hasStaged(wheres)) {
+            throw QueryException("pageParallel can't be used with whereInStaged, the count runs in another connection, use page")
+        }
+        val key = countCacheKey(queriedModel)
+
+        return execute { session ->
+            val count = prepareCount(session)
+            val total = supplyAsync { cachedCount(key) { executePrepared(count) } }
+            val results = list(session, limit, offset.toInt())
+
+            Page(results, offset, await(total))
+        }
+    }
+
+    /**
+     * Updates all the rows that match the wheres with a single statement, without loading the entities.
+     * When there is no active transaction a new one is used for the statement.
+     * The totals of the model in the count cache are invalidated.
+     *
+     * ```java
+     * int rows = Hefesto.make(User.class)
+     *     .where("status", Status.PENDING)
+     *     .update(set -> set.value("status", Status.ACTIVE));
+     * ```
+     *
+     * @param configurator assigns the new values
+     * @return the number of updated rows
+     */
+    fun update(configurator: Consumer<UpdateSet>): Int {
+        val set = UpdateSet()
+        configurator.accept(set)
+
+        if (joins.isNotEmpty()) {
+            throw QueryException("The update can't have joins, use a sub-query in the wheres")
+        }
+        if (set.values.isEmpty()) {
+            throw QueryException("You need to set at least one value")
+        }
+
+        return write { session ->
+            BulkStatements.execute(session, queriedModel, queryOptions) { updateQuery(session, set).executeUpdate() }
+        }
+    }
+
+    /**
+     * Deletes all the rows that match the wheres with a single statement, without loading the entities.
+     * When there is no active transaction a new one is used for the statement.
+     * The totals of the model in the count cache are invalidated.
+     *
+     * The statement doesn't cascade, the relationships that reference the rows must be deleted before.
+     *
+     * ```java
+     * int rows = Hefesto.make(User.class)
+     *     .where("status", Status.INACTIVE)
+     *     .delete();
+     * ```
+     *
+     * @return the number of deleted rows
+     */
+    fun delete(): Int {
+        if (joins.isNotEmpty()) {
+            throw QueryException("The delete can't have joins, use a sub-query in the wheres or deleteInChunks")
+        }
+
+        return write { session ->
+            BulkStatements.execute(session, queriedModel, queryOptions) { deleteQuery(session).executeUpdate() }
+        }
+    }
+
+    /**
+     * Deletes all the rows that match the wheres in chunks of ids, every chunk in its own short transaction,
+     * so a big purge doesn't hold the locks of all the rows until the end.
+     * When there is an active transaction all the chunks run inside it.
+     * The joins can be used, they only filter the ids of every chunk.
+     *
+     * Every chunk selects the ids after the last id of the previous chunk, ordered by id, and the loop stops
+     * when a chunk selects fewer ids than the size, so the rows that keep matching after the delete,
+     * like a soft delete with `@SQLDelete`, are never selected twice.
+     *
+     * ```java
+     * int rows = Hefesto.make(Log.class)
+     *     .where("createdAt", Operator.LESS, LocalDateTime.now().minusMonths(6))
+     *     .deleteInChunks(10_000);
+     * ```
+     *
+     * @param size the maximum rows deleted by a chunk
+     * @return the number of deleted rows
+     */
+    fun deleteInChunks(size: Int): Int {
+        if (size < 1) {
+            throw QueryException("The size of the chunks must be greater than 0")
+        }
+
+        var lastId: Any? = null
+
+        return write { session ->
+            BulkStatements.executeInChunks(session, queriedModel, queryOptions, size) {
+                val ids = chunkIdsQuery(session, size, lastId).resultList
+                if (ids.isEmpty()) {
+                    0 to 0
+                } else {
+                    lastId = ids.last()
+                    ids.size to deleteByIdsQuery(session, ids).executeUpdate()
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects only the field and returns its values, without creating the entities.
+     * The numbers are converted to the numeric type requested, any other mismatch throws a [QueryException].
+     *
+     * @param field the field to select, a field of a join can be selected with its alias (`alias.field`)
+     * @param type the class of the values
+     * @return the values of the field
+     */
+    fun <V> pluck(field: String, type: Class<V>): List<V> {
+        val valueType = (type as Class<Any>).kotlin.javaObjectType as Class<V>
+
+        return execute { pluckRows(it, listOf(field)) }.map { value ->
+            when {
+                value == null -> null
+                valueType.isInstance(value) -> valueType.cast(value)
+                value is Number && Number::class.java.isAssignableFrom(valueType) -> convert(field, value, valueType)
+                else -> throw QueryException("The values of $field are ${value.javaClass.simpleName}, not ${type.simpleName}")
+            } as V
+        }
+    }
+
+    private fun <V> convert(field: String, value: Number, type: Class<V>): V {
+        try {
+            return type.cast(CastUtils.castValue(type, value))
+        } catch (e: NumberFormatException) {
+            throw QueryException("The value $value of $field can't be converted to ${type.simpleName}")
+        }
+    }
+
+    /**
+     * Selects only the numeric field and returns its values in a `long[]`, the nulls are skipped.
+     *
+     * @param field the field to select, a field of a join can be selected with its alias (`alias.field`)
+     * @return the values of the field
+     */
+    fun pluckLongs(field: String): LongArray {
+        val values = pluck(field, Long::class.javaObjectType as Class<Long?>)
+        val result = LongArray(values.count { it != null })
+
+        var index = 0
+        values.forEach {
+            if (it != null) {
+                result[index++] = it
+            }
+        }
+        return result
+    }
+
+    /**
+     * Selects only the two fields and returns a map of the key to the value, without creating the entities.
+     * The order of the rows is kept and, when a key is repeated, the last value is kept.
+     *
+     * @param keyField the field of the keys
+     * @param valueField the field of the values
+     * @return the map of the keys to the values
+     */
+    fun <K, V> pluckMap(keyField: String, valueField: String): Map<K, V> {
+        val rows = execute { pluckRows(it, listOf(keyField, valueField)) }
+        val map = LinkedHashMap<K, V>(maxOf(16, rows.size * 4 / 3 + 1))
+
+        rows.forEach {
+            val row = it as Array<*>
+            map[row[0] as K] = row[1] as V
+        }
+        return map
+    }
+
+    /**
+     * Executes the statement and invalidates the totals of the model in the count cache.
+     */
+    private fun write(statement: (SharedSessionContract) -> Int): Int {
+        val rows = execute(statement)
+        BaseBuilder.countCache?.invalidate(queriedModel)
+        return rows
+    }
+
+    /**
+     * The async executions use a new session from the SessionFactory for every call,
+     * unless an async provider was set with [BaseBuilder.setAsyncSessionProvider].
+     *
+     * The factory is read from the provider, no session is opened to find it.
+     * When the provider doesn't know its factory the async provider must be set.
+     *
+     * @return the provider for the async executions
+     */
+    override fun resolveAsyncSessionProvider(): SessionProvider<*> {
+        asyncSessionProvider?.let { return it }
+
+        val sessionFactory = providedSessionFactory() ?: throw QueryException(
+            "The session provider doesn't expose its SessionFactory, set one for the async executions with setAsyncSessionProvider"
+        )
+
+        return SessionFactorySessionProvider(sessionFactory)
+    }
+
+    /**
+     * The factory exposed by the session provider, read without opening a session.
+     *
+     * @return the factory, null when the provider doesn't expose it
+     */
+    private fun providedSessionFactory(): SessionFactory? {
+        return when (val provider = resolveProvider()) {
+            is SessionFactoryProvider -> provider.sessionFactory
+            is StaticSessionProvider<*> -> (provider.getSession() as? Session)?.sessionFactory
+            else -> null
+        }
+    }
+
+    /**
+     * Executes the block with the session resolved from the provider, applying the query options
+     * and staging the values of the `whereInStaged`.
+     */
+    protected fun <R> execute(block: (SharedSessionContract) -> R): R {
+        return withSession {
+            queryOptions.execute(it) { session ->
+                StagedValues.execute(session, wheres) { slots -> prepared(session, slots, block) }
+            }
+        }
+    }
+
+    /**
+     * Executes a query already created from the builder, without preparing or staging the wheres again,
+     * so it can run in another thread while the builder is used.
+     */
+    private fun <R> executePrepared(block: (SharedSessionContract) -> R): R {
+        return withSession { queryOptions.execute(it, block) }
+    }
+
+    /**
+     * Same as [execute] for the executions that return a stream,
+     * the session and the staged values are released when the stream is closed.
+     */
+    protected fun <R> executeStream(block: (SharedSessionContract) -> Stream<R>): Stream<R> {
+        return streamWithSession {
+            queryOptions.stream(it) { session ->
+                StagedValues.stream(session, wheres) { slots -> prepared(session, slots, block) }
+            }
+        }
+    }
+
+    /**
+     * Marks the wheres with the features of the database of the session and the slots of the staged values
+     * before the query is constructed, the slots are cleared after the block, when the tables can be dropped.
+     */
+    private fun <R> prepared(session: SharedSessionContract, slots: Map<WhereStaged, Int>, block: (SharedSessionContract) -> R): R {
+        wheres.arrayParameters = HefestoFunctions.supportsArrays(session)
+        wheres.stagedSlots = slots
+        try {
+            return block(session)
+        } finally {
+            wheres.stagedSlots = emptyMap()
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package io.github.robertomike.hefesto.configs
 
 import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.sessions.EntityManagerSessionProvider
 import jakarta.persistence.EntityManager
-import org.hibernate.Session
 
 /**
  * Auto-configuration class for Spring Boot integration.
  * Automatically configures HefestoSQL when an EntityManager is available in the application context.
  * 
- * This class extracts the Hibernate Session from the EntityManager and sets it as the
- * default session for all Hefesto query builders, eliminating the need for manual configuration.
+ * This class registers an [EntityManagerSessionProvider] for all Hefesto query builders, so every
+ * execution unwraps the Hibernate Session bound to the current transaction,
+ * eliminating the need for manual configuration.
  * 
  * Usage:
  * ```java
@@ -26,15 +27,15 @@ import org.hibernate.Session
  * }
  * ```
  * 
- * For non-Spring applications, manually configure the session:
+ * For non-Spring applications, manually configure the session provider:
  * ```java
- * Hefesto.setSession(hibernateSession);
+ * Hefesto.setSessionProvider(new ThreadBoundSessionProvider(sessionFactory));
  * ```
  *
  * @param entityManager the JPA EntityManager from Spring context
  */
 class HefestoAutoconfiguration(entityManager: EntityManager) {
     init {
-        BaseBuilder.setSession(entityManager.unwrap(Session::class.java))
+        BaseBuilder.setSessionProvider(EntityManagerSessionProvider(entityManager))
     }
 }
@@ -0,0 +1,41 @@
+package io.github.robertomike.hefesto.configs
+
+import io.github.robertomike.hefesto.utils.HefestoFunctions
+import io.github.robertomike.hefesto.utils.StagedValues
+import org.hibernate.boot.model.FunctionContributions
+import org.hibernate.boot.model.FunctionContributor
+import org.hibernate.engine.jdbc.spi.JdbcServices
+import org.hibernate.type.StandardBasicTypes
+
+/**
+ * Contributes the SQL functions of [HefestoFunctions] to every session factory.
+ *
+ * It's registered in `META-INF/services/org.hibernate.boot.model.FunctionContributor`, so Hibernate
+ * adds the functions while the factory is created, with or without Spring, and the registry
+ * is never changed after the boot.
+ */
+class HefestoFunctionContributor : FunctionContributor {
+    override fun contributeFunctions(functionContributions: FunctionContributions) {
+        val registry = functionContributions.functionRegistry
+        val basicTypes = functionContributions.typeConfiguration.basicTypeRegistry
+        val dialect = functionContributions.serviceRegistry.getService(JdbcServices::class.java).dialect
+        val booleanType = basicTypes.resolve(StandardBasicTypes.BOOLEAN)
+
+        registry.registerPattern(HefestoFunctions.COUNT_OVER, "count(*) over()", basicTypes.resolve(StandardBasicTypes.LONG))
+
+        if (HefestoFunctions.supportsArrays(dialect)) {
+            registry.registerPattern(HefestoFunctions.ANY, "(?1 = any(?2))", booleanType)
+        }
+
+        for (slot in 0 until StagedValues.SLOTS) {
+            val table = StagedValues.tableName(dialect, slot)
+
+            listOf(
+                HefestoFunctions.STAGED_NUMBER to StagedValues.NUMBER_COLUMN,
+                HefestoFunctions.STAGED_TEXT to StagedValues.TEXT_COLUMN
+            ).forEach { (name, column) ->
+                registry.registerPattern("${name}_$slot", "(?1 in (select s.$column from $table s))", booleanType)
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.robertomike.hefesto.sessions
+
+import jakarta.persistence.EntityManager
+import org.hibernate.Session
+import org.hibernate.SessionFactory
+
+/**
+ * Provider that unwraps the session from the [EntityManager] on every execution.
+ *
+ * With a container managed (shared) EntityManager, like the one injected by Spring,
+ * every execution uses the session bound to the current transaction.
+ *
+ * @param entityManager the entity manager to unwrap
+ */
+class EntityManagerSessionProvider(private val entityManager: EntityManager) : SessionProvider<Session>,
+    SessionFactoryProvider {
+    override val sessionFactory: SessionFactory
+        get() = entityManager.entityManagerFactory.unwrap(SessionFactory::class.java)
+
+    override fun getSession(): Session = entityManager.unwrap(Session::class.java)
+
+    override fun releaseSession(session: Session) {
+        // The entity manager owns the session
+    }
+}
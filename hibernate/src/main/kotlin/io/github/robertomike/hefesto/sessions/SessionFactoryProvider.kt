@@ -0,0 +1,14 @@
+package io.github.robertomike.hefesto.sessions
+
+import org.hibernate.SessionFactory
+
+/**
+ * Implemented by the providers that know the [SessionFactory] of their sessions,
+ * so the async executions can open their own sessions without asking the provider for one.
+ */
+interface SessionFactoryProvider {
+    /**
+     * The factory of the sessions returned by the provider
+     */
+    val sessionFactory: SessionFactory
+}
@@ -0,0 +1,23 @@
+package io.github.robertomike.hefesto.sessions
+
+import org.hibernate.Session
+import org.hibernate.SessionFactory
+
+/**
+ * Provider that opens a new session for every execution and closes it as soon as the execution finished.
+ *
+ * The returned entities are detached, so lazy relationships must be fetched in the same query
+ * (for example with `with("relationship")`).
+ *
+ * @param sessionFactory the factory used to open the sessions
+ */
+class SessionFactorySessionProvider(override val sessionFactory: SessionFactory) : SessionProvider<Session>,
+    SessionFactoryProvider {
+    override fun getSession(): Session = sessionFactory.openSession()
+
+    override fun releaseSession(session: Session) {
+        if (session.isOpen) {
+            session.close()
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.robertomike.hefesto.sessions
+
+import org.hibernate.Session
+import org.hibernate.SessionFactory
+
+/**
+ * Provider that keeps one session per thread.
+ *
+ * The session is opened the first time a thread executes a query, or can be bound manually with [bind].
+ * The session stays open until [closeCurrentSession] is called from the same thread,
+ * so call it at the end of the request/unit of work.
+ *
+ * ```java
+ * ThreadBoundSessionProvider provider = new ThreadBoundSessionProvider(sessionFactory);
+ * Hefesto.setSessionProvider(provider);
+ *
+ * try {
+ *     List<User> users = Hefesto.make(User.class).get();
+ * } finally {
+ *     provider.closeCurrentSession();
+ * }
+ * ```
+ *
+ * @param sessionFactory the factory used to open the sessions
+ */
+class ThreadBoundSessionProvider(override val sessionFactory: SessionFactory) : SessionProvider<Session>,
+    SessionFactoryProvider {
+    private val current = ThreadLocal<Session>()
+
+    override fun getSession(): Session {
+        val session = current.get()
+        if (session != null && session.isOpen) {
+            return session
+        }
+        return sessionFactory.openSession().also { current.set(it) }
+    }
+
+    override fun releaseSession(session: Session) {
+        // The session lives until the thread closes it
+    }
+
+    /**
+     * Binds the session to the current thread
+     *
+     * @param session the session to use in the current thread
+     */
+    fun bind(session: Session) {
+        current.set(session)
+    }
+
+    /**
+     * Removes the session from the current thread without closing it
+     *
+     * @return the session that was bound, if any
+     */
+    fun unbind(): Session? {
+        val session = current.get()
+        current.remove()
+        return session
+    }
+
+    /**
+     * Closes and removes the session bound to the current thread
+     */
+    fun closeCurrentSession() {
+        val session = unbind()
+        if (session != null && session.isOpen) {
+            session.close()
+        }
+    }
+}
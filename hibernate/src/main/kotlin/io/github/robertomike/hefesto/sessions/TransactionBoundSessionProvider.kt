@@ -0,0 +1,21 @@
+package io.github.robertomike.hefesto.sessions
+
+import org.hibernate.Session
+import org.hibernate.SessionFactory
+
+/**
+ * Provider that uses the session bound to the current transaction through [SessionFactory.getCurrentSession].
+ *
+ * The session context is decided by Hibernate (`hibernate.current_session_context_class`)
+ * or by the transaction manager in use, for example Spring or JTA.
+ *
+ * @param sessionFactory the factory that owns the current session context
+ */
+class TransactionBoundSessionProvider(override val sessionFactory: SessionFactory) : SessionProvider<Session>,
+    SessionFactoryProvider {
+    override fun getSession(): Session = sessionFactory.currentSession
+
+    override fun releaseSession(session: Session) {
+        // The session is closed by the transaction that owns it
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.robertomike.hefesto.utils
+
+import org.hibernate.engine.spi.SessionFactoryImplementor
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+import org.hibernate.query.BindableType
+import org.hibernate.query.sqm.SqmExpressible
+import org.hibernate.type.CustomType
+import org.hibernate.usertype.UserType
+import java.io.Serializable
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.sql.Types
+
+/**
+ * The type of the parameter of a `whereInArray`, it binds the values as one JDBC array
+ * created with the connection of the statement, see [HefestoFunctions.arrayType].
+ *
+ * It's resolved to a custom type of the session factory of the query, so it can be used
+ * in the criteria and HQL parameters without being registered.
+ *
+ * @param sqlType the SQL type of the elements, passed to [java.sql.Connection.createArrayOf]
+ */
+class ArrayParameterType(private val sqlType: String) : UserType<Array<Any>>, BindableType<Array<Any>> {
+    override fun getSqlType(): Int = Types.ARRAY
+
+    override fun returnedClass(): Class<Array<Any>> = Array<Any>::class.java
+
+    override fun getBindableJavaType(): Class<Array<Any>> = returnedClass()
+
+    override fun resolveExpressible(sessionFactory: SessionFactoryImplementor): SqmExpressible<Array<Any>> {
+        return CustomType(this, sessionFactory.typeConfiguration)
+    }
+
+    override fun nullSafeSet(st: PreparedStatement, value: Array<Any>?, index: Int, session: SharedSessionContractImplementor?) {
+        if (value == null) {
+            st.setNull(index, Types.ARRAY)
+            return
+        }
+
+        st.setArray(index, st.connection.createArrayOf(sqlType, value))
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun nullSafeGet(rs: ResultSet, position: Int, session: SharedSessionContractImplementor?, owner: Any?): Array<Any>? {
+        return rs.getArray(position)?.array as Array<Any>?
+    }
+
+    override fun equals(x: Any?, y: Any?): Boolean {
+        return (x as Array<*>?).contentEquals(y as Array<*>?)
+    }
+
+    override fun hashCode(x: Any?): Int {
+        return (x as Array<*>?).contentHashCode()
+    }
+
+    override fun deepCopy(value: Any?): Any? {
+        return (value as Array<*>?)?.copyOf()
+    }
+
+    override fun isMutable(): Boolean = true
+
+    override fun disassemble(value: Any?): Serializable? {
+        return deepCopy(value) as Serializable?
+    }
+
+    override fun assemble(cached: Serializable?, owner: Any?): Any? {
+        return deepCopy(cached)
+    }
+
+    override fun replace(original: Any?, target: Any?, owner: Any?): Any? {
+        return deepCopy(original)
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.exceptions.QueryException
+import jakarta.persistence.criteria.JoinType
+import jakarta.persistence.metamodel.Attribute
+import org.hibernate.Hibernate
+import org.hibernate.SharedSessionContract
+import org.hibernate.StatelessSession
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+
+/**
+ * Loads the relationships requested with `withBatch(...)` after the main query, shared by the criteria and HQL implementations.
+ *
+ * Every relationship is loaded with one query per chunk of parent ids:
+ * ```sql
+ * select p from User p left join fetch p.pets where p.id in (:ids)
+ * ```
+ * The parents are already in the persistence context, so Hibernate initializes the relationship of the loaded entities.
+ * Nested paths like `posts.comments` load `posts` first and then `comments` for the loaded posts.
+ */
+object BatchLoader {
+    /**
+     * Loads the batch relationships of the options into the entities.
+     *
+     * @param session the session that loaded the entities, it can't be a StatelessSession
+     * @param entities the entities returned by the main query
+     * @param options the options with the relationships and the batch size
+     */
+    @JvmStatic
+    fun load(session: SharedSessionContract, entities: List<*>, options: QueryOptions) {
+        load(session, entities, options.batchFetches, options)
+    }
+
+    /**
+     * Loads the relationships into the entities.
+     *
+     * @param session the session that loaded the entities, it can't be a StatelessSession
+     * @param entities the entities returned by the main query
+     * @param paths the relationships to load
+     * @param options the options with the batch size
+     */
+    @JvmStatic
+    fun load(session: SharedSessionContract, entities: List<*>, paths: List<String>, options: QueryOptions) {
+        if (paths.isEmpty() || entities.isEmpty()) {
+            return
+        }
+        if (session is StatelessSession) {
+            throw QueryException("withBatch needs a stateful session, use with for the stateless queries")
+        }
+
+        loadLevel(session, entities.filterNotNull(), paths, options)
+    }
+
+    /**
+     * Loads the paths grouped by the class of the entities, so the subclasses of a hierarchy
+     * and the different targets of a nested path are fetched with their own type.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun loadLevel(session: SharedSessionContract, entities: List<Any>, paths: List<String>, options: QueryOptions) {
+        entities.groupBy { Hibernate.getClass(it) as Class<Any> }.forEach { (type, group) ->
+            loadType(session, type, group, paths, options)
+        }
+    }
+
+    private fun loadType(
+        session: SharedSessionContract,
+        type: Class<Any>,
+        entities: List<Any>,
+        paths: List<String>,
+        options: QueryOptions
+    ) {
+        val factory = FetchUtils.factoryOf(session)
+        val util = factory.persistenceUnitUtil
+        val entity = factory.metamodel.entity(type)
+        val idName = FetchUtils.idName(entity)
+            ?: throw QueryException("withBatch needs a single id in ${type.simpleName}")
+
+        paths.groupBy({ it.substringBefore(".") }, { it.substringAfter(".", "") }).forEach { (name, nested) ->
+            val attribute = FetchUtils.resolvePath(entity, name)?.single()
+            if (attribute == null || attribute.persistentAttributeType == Attribute.PersistentAttributeType.BASIC) {
+                throw QueryException("The relationship $name doesn't exist in ${type.simpleName}")
+            }
+
+            entities.filter { !util.isLoaded(it, name) }
+                .map { util.getIdentifier(it) }
+                .distinct()
+                .chunked(options.batchSize)
+                .forEach { ids -> fetch(session, type, idName, name, ids, options) }
+
+            val children = nested.filter { it.isNotEmpty() }
+            if (children.isNotEmpty()) {
+                val related = entities.flatMap { valuesOf(it, attribute) }.distinct()
+                loadLevel(session, related, children, options)
+            }
+        }
+    }
+
+    /**
+     * Fetches the relationship for the given ids, the results are discarded because the managed parents are updated.
+     */
+    private fun fetch(
+        session: SharedSessionContract,
+        type: Class<Any>,
+        idName: String,
+        relationship: String,
+        ids: List<Any?>,
+        options: QueryOptions
+    ) {
+        val cb = session.criteriaBuilder
+        val cr = cb.createQuery(type)
+        val root = cr.from(type)
+
+        root.fetch<Any, Any>(relationship, JoinType.LEFT)
+        cr.select(root).where(root.get<Any>(idName).`in`(ids))
+
+        options.apply(session.createQuery(cr)).resultList
+    }
+
+    /**
+     * Reads the loaded relationship of an entity, the elements for collections and the unproxied entity for to-one.
+     */
+    private fun valuesOf(entity: Any, attribute: Attribute<*, *>): List<Any> {
+        val value = when (val member = attribute.javaMember) {
+            is Field -> {
+                member.isAccessible = true
+                member.get(entity)
+            }
+            is Method -> {
+                member.isAccessible = true
+                member.invoke(entity)
+            }
+            else -> null
+        } ?: return emptyList()
+
+        return when (value) {
+            is Collection<*> -> value.filterNotNull()
+            is Map<*, *> -> value.values.filterNotNull()
+            else -> listOf(Hibernate.unproxy(value))
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.robertomike.hefesto.utils
+
+import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+
+/**
+ * Runs the bulk update and delete statements, shared by the criteria and HQL implementations.
+ */
+object BulkStatements {
+    /**
+     * Executes the statement inside the active transaction, or in a new one when there is no active transaction.
+     * When [QueryOptions.evictOnWrite] is enabled the entities of the model are removed from the session
+     * and the second-level cache after the statement.
+     *
+     * @param session the session of the execution
+     * @param model the entity changed by the statement
+     * @param options the options of the builder
+     * @param statement the execution of the statement
+     * @return the number of affected rows
+     */
+    @JvmStatic
+    fun execute(session: SharedSessionContract, model: Class<*>, options: QueryOptions, statement: () -> Int): Int {
+        val rows = inTransaction(session, statement)
+
+        if (options.evictOnWrite) {
+            evict(session, model)
+        }
+        return rows
+    }
+
+    /**
+     * Executes the chunk until it selects fewer rows than the size,
+     * every chunk in its own transaction so the locks are released between the chunks.
+     * A chunk can affect fewer rows than it selected, like with a soft delete with `@SQLDelete`, the loop goes on.
+     * When there is an active transaction the chunks run inside it.
+     * When [QueryOptions.evictOnWrite] is enabled the entities of the model are evicted after the last chunk.
+     *
+     * @param session the session of the execution
+     * @param model the entity changed by the statement
+     * @param options the options of the builder
+     * @param size the maximum rows affected by a chunk
+     * @param chunk the execution of one chunk, it returns the selected and the affected rows
+     * @return the number of affected rows of all the chunks
+     */
+    @JvmStatic
+    fun executeInChunks(
+        session: SharedSessionContract,
+        model: Class<*>,
+        options: QueryOptions,
+        size: Int,
+        chunk: () -> Pair<Int, Int>
+    ): Int {
+        var total = 0
+
+        do {
+            val (selected, rows) = inTransaction(session, chunk)
+            total += rows
+        } while (selected >= size)
+
+        if (options.evictOnWrite) {
+            evict(session, model)
+        }
+        return total
+    }
+
+    /**
+     * Joins the transaction in progress, resource local or JTA, so it's never nested or committed here.
+     * Only when there is none a transaction is started and committed.
+     */
+    private fun <R> inTransaction(session: SharedSessionContract, statement: () -> R): R {
+        if ((session as SharedSessionContractImplementor).isTransactionInProgress) {
+            return statement()
+        }
+
+        val transaction = session.transaction
+        if (transaction.isActive) {
+            return statement()
+        }
+
+        transaction.begin()
+        try {
+            val result = statement()
+            transaction.commit()
+            return result
+        } catch (e: Throwable) {
+            if (transaction.isActive) {
+                transaction.rollback()
+            }
+            throw e
+        }
+    }
+
+    private fun evict(session: SharedSessionContract, model: Class<*>) {
+        val implementor = session as SharedSessionContractImplementor
+
+        if (session is Session) {
+            implementor.persistenceContextInternal.entitiesByKey.values
+                .filter { model.isInstance(it) }
+                .forEach { session.evict(it) }
+        }
+        implementor.factory.cache.evictEntityData(model)
+    }
+}
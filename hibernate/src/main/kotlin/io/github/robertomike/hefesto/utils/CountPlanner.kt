@@ -0,0 +1,152 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.GroupBy
+import io.github.robertomike.hefesto.actions.Join
+import io.github.robertomike.hefesto.actions.wheres.BaseWhere
+import io.github.robertomike.hefesto.actions.wheres.CollectionWhere
+import io.github.robertomike.hefesto.actions.wheres.Where
+import io.github.robertomike.hefesto.actions.wheres.WhereField
+import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.enums.JoinOperator
+import jakarta.persistence.metamodel.Attribute
+import jakarta.persistence.metamodel.ManagedType
+import jakarta.persistence.metamodel.SingularAttribute
+
+/**
+ * The joins that the count query needs.
+ *
+ * @property joins the joins that must be applied in the count query
+ * @property distinct true when the kept joins can duplicate the rows of the root, so the count must be distinct
+ */
+data class CountPlan(
+    val joins: List<Join>,
+    val distinct: Boolean
+)
+
+/**
+ * Decides which joins are needed to count the results of a query, shared by the criteria and HQL implementations.
+ *
+ * A join is removed when it can't change the number of rows and nothing uses it:
+ * - it's a LEFT join on a to-one relationship (nested joins included)
+ * - no where, group by or inline condition of any join (its own or another one) references its alias
+ *
+ * When the wheres or the inline join conditions contain conditions that can't be analysed (raw or custom conditions, exists and sub-queries)
+ * all the joins are kept.
+ */
+object CountPlanner {
+    /**
+     * Creates the plan for the count query.
+     *
+     * @param model the metamodel of the root entity, null when it's not available
+     * @param joins the joins of the query
+     * @param wheres the wheres of the query
+     * @param groupBy the group by of the query
+     * @return the plan for the count query
+     */
+    @JvmStatic
+    fun plan(model: ManagedType<*>?, joins: List<Join>, wheres: List<BaseWhere>, groupBy: List<GroupBy>): CountPlan {
+        if (model == null) {
+            return CountPlan(joins, joins.isNotEmpty())
+        }
+
+        val references = mutableSetOf<String>()
+        val analysable = collectReferences(wheres, references) && joins.all { collectJoinReferences(it, references) }
+        groupBy.forEach { addReference(it.field, references) }
+
+        val kept = joins.filter { !analysable || !canBeRemoved(model, it, references) }
+
+        return CountPlan(kept, kept.any { canDuplicate(model, it) })
+    }
+
+    /**
+     * Collects the aliases referenced by the wheres.
+     *
+     * @return false when a where can't be analysed
+     */
+    private fun collectReferences(wheres: List<BaseWhere>, references: MutableSet<String>): Boolean {
+        for (where in wheres) {
+            when (where) {
+                is CollectionWhere -> if (!collectReferences(where.wheres, references)) return false
+                is WhereField -> {
+                    addReference(where.field, references)
+                    addReference(where.secondField, references)
+                }
+                is Where -> {
+                    if (where.value is BaseBuilder<*, *, *, *, *, *, *, *>) {
+                        return false
+                    }
+                    addReference(where.field, references)
+                }
+                else -> return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * Collects the aliases referenced by the inline conditions of the join and its nested joins.
+     *
+     * @return false when a condition can't be analysed
+     */
+    private fun collectJoinReferences(join: Join, references: MutableSet<String>): Boolean {
+        return collectReferences(join.conditions, references) && join.deepJoins.all { collectJoinReferences(it, references) }
+    }
+
+    private fun addReference(field: String, references: MutableSet<String>) {
+        if (field.contains(".")) {
+            references.add(field.substringBefore("."))
+        }
+    }
+
+    private fun canBeRemoved(from: ManagedType<*>, join: Join, references: Set<String>): Boolean {
+        if (join.joinOperator != JoinOperator.LEFT || join.isCustomJoin() || join.table.contains(".")) {
+            return false
+        }
+        if (join.conditions.isNotEmpty() || isReferenced(join, references)) {
+            return false
+        }
+
+        val attribute = findAttribute(from, join.table) ?: return false
+        if (attribute.isCollection) {
+            return false
+        }
+
+        val target = managedTypeOf(attribute) ?: return join.deepJoins.isEmpty()
+
+        return join.deepJoins.all { canBeRemoved(target, it, references) }
+    }
+
+    private fun canDuplicate(from: ManagedType<*>, join: Join): Boolean {
+        if (join.isCustomJoin()) {
+            return true
+        }
+
+        var current = from
+        for (name in join.table.split(".")) {
+            val attribute = findAttribute(current, name) ?: return true
+            if (attribute.isCollection) {
+                return true
+            }
+            current = managedTypeOf(attribute) ?: return join.deepJoins.isNotEmpty()
+        }
+
+        return join.deepJoins.any { canDuplicate(current, it) }
+    }
+
+    private fun isReferenced(join: Join, references: Set<String>): Boolean {
+        return references.contains(join.alias ?: join.table) || references.contains(join.getAcronym())
+    }
+
+    private fun findAttribute(from: ManagedType<*>, name: String): Attribute<*, *>? {
+        return try {
+            from.getAttribute(name)
+        } catch (e: IllegalArgumentException) {
+            null
+        }
+    }
+
+    private fun managedTypeOf(attribute: Attribute<*, *>): ManagedType<*>? {
+        val type = (attribute as? SingularAttribute<*, *>)?.type
+        return type as? ManagedType<*>
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.exceptions.QueryException
+import jakarta.persistence.EntityGraph
+import jakarta.persistence.Subgraph
+import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+
+/**
+ * Builder of a dynamic entity graph, used by `fetchGraph { ... }`.
+ * The paths are relative to the root entity, nested relationships use dots.
+ *
+ * ```java
+ * Hefesto.make(User.class)
+ *     .fetchGraph(graph -> graph.add("pets", "posts.comments"))
+ *     .get();
+ * ```
+ */
+class FetchGraph {
+    private val paths = mutableListOf<String>()
+
+    /**
+     * Adds the relationships to the graph.
+     *
+     * @param paths the paths of the relationships, for example "pets" or "posts.comments"
+     * @return the same builder
+     */
+    fun add(vararg paths: String): FetchGraph {
+        this.paths.addAll(paths)
+        return this
+    }
+
+    /**
+     * Creates the entity graph for the model.
+     *
+     * @param session the session of the query, it must be a stateful session
+     * @param model the root entity
+     * @return the entity graph
+     */
+    fun build(session: SharedSessionContract, model: Class<*>): EntityGraph<*> {
+        if (session !is Session) {
+            throw QueryException("fetchGraph needs a stateful session, use withGraph with a named graph instead")
+        }
+
+        val graph = session.createEntityGraph(model)
+        val subgraphs = mutableMapOf<String, Subgraph<*>>()
+
+        for (path in paths) {
+            val names = path.split(".")
+            var parent: String? = null
+
+            names.forEachIndexed { index, name ->
+                val current = if (parent == null) name else "$parent.$name"
+
+                if (index == names.size - 1) {
+                    val subgraph = parent?.let { subgraphs[it] }
+                    if (subgraph == null) graph.addAttributeNodes(name) else subgraph.addAttributeNodes(name)
+                } else if (!subgraphs.containsKey(current)) {
+                    val subgraph = parent?.let { subgraphs[it] }
+                    subgraphs[current] = if (subgraph == null) graph.addSubgraph<Any>(name) else subgraph.addSubgraph<Any>(name)
+                }
+
+                parent = current
+            }
+        }
+
+        return graph
+    }
+}
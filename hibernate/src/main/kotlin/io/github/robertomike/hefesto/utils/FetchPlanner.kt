@@ -0,0 +1,83 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.JoinFetch
+import io.github.robertomike.hefesto.exceptions.QueryException
+import jakarta.persistence.criteria.JoinType
+import jakarta.persistence.metamodel.Attribute
+import jakarta.persistence.metamodel.ManagedType
+
+/**
+ * How the relationships requested with `withPlanned(...)` are loaded.
+ *
+ * @property joinFetches the relationships added to the query as left join fetch
+ * @property batchFetches the relationships loaded after the query with [BatchLoader]
+ * @property decisions one line for every relationship with the strategy and the reason, useful for debugging
+ */
+data class FetchPlan(
+    val joinFetches: List<JoinFetch>,
+    val batchFetches: List<String>,
+    val decisions: List<String>
+)
+
+/**
+ * Chooses the strategy to load every relationship based on the JPA metamodel,
+ * shared by the criteria and HQL implementations:
+ * - to-one relationships of the root are join fetched, they don't multiply the rows
+ * - the first collection of the root is join fetched, when no other collection is fetched
+ * - the other collections and the nested paths are loaded with batch queries
+ *
+ * Only one collection is ever join fetched, so the rows never become a cartesian product.
+ */
+object FetchPlanner {
+    /**
+     * Creates the plan for the relationships.
+     *
+     * @param model the metamodel of the root entity
+     * @param relationships the paths requested, for example "owner" or "posts.comments"
+     * @param fetches the fetches already added with `with(...)`
+     * @return the plan
+     */
+    @JvmStatic
+    fun plan(model: ManagedType<*>, relationships: List<String>, fetches: List<JoinFetch>): FetchPlan {
+        val joinFetches = mutableListOf<JoinFetch>()
+        val batchFetches = mutableListOf<String>()
+        val decisions = mutableListOf<String>()
+        var collectionFetched = FetchUtils.hasCollectionFetch(model, fetches)
+
+        for (path in relationships.distinct()) {
+            val attributes = FetchUtils.resolvePath(model, path)
+            if (attributes == null || attributes.any { it.persistentAttributeType == Attribute.PersistentAttributeType.BASIC }) {
+                throw QueryException("The relationship $path doesn't exist in ${model.javaType.simpleName}")
+            }
+
+            val first = attributes.first()
+            val alreadyFetched = fetches.any { !it.nested && it.relationship == first.name } ||
+                    joinFetches.any { it.relationship == first.name }
+
+            when {
+                alreadyFetched -> decisions.add("${first.name}: already join fetched")
+                batchFetches.contains(first.name) -> decisions.add("${first.name}: already batched")
+                !first.isCollection -> {
+                    joinFetches.add(JoinFetch.make(first.name, JoinType.LEFT))
+                    decisions.add("${first.name}: join fetch, to-one relationship")
+                }
+                !collectionFetched -> {
+                    joinFetches.add(JoinFetch.make(first.name, JoinType.LEFT))
+                    collectionFetched = true
+                    decisions.add("${first.name}: join fetch, first collection")
+                }
+                else -> {
+                    batchFetches.add(first.name)
+                    decisions.add("${first.name}: batch, another collection is join fetched")
+                }
+            }
+
+            if (attributes.size > 1) {
+                batchFetches.add(path)
+                decisions.add("$path: batch, nested relationship")
+            }
+        }
+
+        return FetchPlan(joinFetches, batchFetches.distinct(), decisions)
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.JoinFetch
+import jakarta.persistence.EntityManagerFactory
+import jakarta.persistence.criteria.JoinType
+import jakarta.persistence.metamodel.Attribute
+import jakarta.persistence.metamodel.IdentifiableType
+import jakarta.persistence.metamodel.ManagedType
+import jakarta.persistence.metamodel.PluralAttribute
+import jakarta.persistence.metamodel.SingularAttribute
+import org.hibernate.SharedSessionContract
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+
+/**
+ * Utilities to inspect the relationships that are fetched, shared by the criteria and HQL implementations.
+ */
+object FetchUtils {
+    /**
+     * Returns the session factory of the session as an [EntityManagerFactory], used to read the JPA metamodel.
+     *
+     * @param session the session
+     * @return the factory of the session
+     */
+    @JvmStatic
+    fun factoryOf(session: SharedSessionContract): EntityManagerFactory {
+        return (session as SharedSessionContractImplementor).factory
+    }
+
+    /**
+     * Checks if any of the fetches loads a collection, directly or through a nested path.
+     * Paging a query that fetches a collection makes Hibernate paginate in memory.
+     *
+     * @param model the metamodel of the root entity
+     * @param fetches the fetches of the query
+     * @return true if a collection is fetched
+     */
+    @JvmStatic
+    fun hasCollectionFetch(model: ManagedType<*>, fetches: List<JoinFetch>): Boolean {
+        return fetches.any { fetch ->
+            val attributes = resolvePath(model, pathOf(fetch, fetches))
+            attributes == null || attributes.any { it.isCollection }
+        }
+    }
+
+    /**
+     * Returns the attributes of the root fetched with an inner join, they filter the rows of the root
+     * so they must be kept as conditions when the fetch is not applied.
+     *
+     * @param model the metamodel of the root entity
+     * @param fetches the fetches of the query
+     * @return the attributes of the root fetched with an inner join
+     */
+    @JvmStatic
+    fun innerFetches(model: ManagedType<*>, fetches: List<JoinFetch>): List<Attribute<*, *>> {
+        return fetches
+            .filter { !it.nested && it.joinType == JoinType.INNER && !it.relationship.contains(".") }
+            .mapNotNull { resolvePath(model, it.relationship)?.single() }
+    }
+
+    /**
+     * Returns the path from the root of the fetch, nested fetches start with the alias of another fetch.
+     */
+    private fun pathOf(fetch: JoinFetch, fetches: List<JoinFetch>): String {
+        if (!fetch.nested) {
+            return fetch.relationship
+        }
+
+        val alias = fetch.relationship.substringBefore(".")
+        val parent = fetches.firstOrNull { it !== fetch && it.alias == alias } ?: return fetch.relationship
+
+        return pathOf(parent, fetches) + "." + fetch.relationship.substringAfter(".")
+    }
+
+    /**
+     * Resolves every attribute of a dotted path.
+     *
+     * @param model the metamodel where the path starts
+     * @param path the path, for example "posts.comments"
+     * @return the attributes of the path, null if any part doesn't exist
+     */
+    @JvmStatic
+    fun resolvePath(model: ManagedType<*>, path: String): List<Attribute<*, *>>? {
+        val attributes = mutableListOf<Attribute<*, *>>()
+        var current: ManagedType<*>? = model
+
+        for (name in path.split(".")) {
+            val attribute = try {
+                current?.getAttribute(name)
+            } catch (e: IllegalArgumentException) {
+                null
+            } ?: return null
+
+            attributes.add(attribute)
+            current = targetOf(attribute)
+        }
+
+        return attributes
+    }
+
+    /**
+     * Returns the managed type an attribute points to, null for basic attributes.
+     *
+     * @param attribute the attribute
+     * @return the target managed type
+     */
+    @JvmStatic
+    fun targetOf(attribute: Attribute<*, *>): ManagedType<*>? {
+        val type = when (attribute) {
+            is PluralAttribute<*, *, *> -> attribute.elementType
+            is SingularAttribute<*, *> -> attribute.type
+            else -> null
+        }
+        return type as? ManagedType<*>
+    }
+
+    /**
+     * Returns the name of the id attribute of the entity.
+     *
+     * @param model the metamodel of the entity
+     * @return the name of the id, null when the entity doesn't have a single id
+     */
+    @JvmStatic
+    fun idName(model: ManagedType<*>): String? {
+        if (model !is IdentifiableType<*> || !model.hasSingleIdAttribute()) {
+            return null
+        }
+        return model.singularAttributes.firstOrNull { it.isId }?.name
+    }
+
+    /**
+     * Sorts the entities following the order of the ids.
+     *
+     * @param entities the entities loaded in any order
+     * @param ids the ids in the expected order
+     * @param factory the factory used to read the id of every entity
+     * @return the entities in the order of the ids
+     */
+    @JvmStatic
+    fun <T> sortByIds(entities: List<T>, ids: List<Any?>, factory: EntityManagerFactory): List<T> {
+        val util = factory.persistenceUnitUtil
+        val byId = entities.associateBy { util.getIdentifier(it) }
+
+        return ids.mapNotNull { byId[it] }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.configs.HefestoFunctionContributor
+import org.hibernate.SharedSessionContract
+import org.hibernate.dialect.Dialect
+import org.hibernate.dialect.H2Dialect
+import org.hibernate.dialect.PostgreSQLDialect
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+import java.util.*
+
+/**
+ * The SQL functions used internally by Hefesto, they are added to every session factory
+ * by [HefestoFunctionContributor] while the factory is created.
+ */
+object HefestoFunctions {
+    /**
+     * Renders `count(*) over()`, the total of rows of the query before applying the limit
+     */
+    const val COUNT_OVER = "hefesto_count_over"
+
+    /**
+     * Renders `field = any(?)` with the values bound as one JDBC array, see [ArrayParameterType],
+     * only registered on PostgreSQL and H2
+     */
+    const val ANY = "hefesto_any"
+
+    /**
+     * Renders `field in (select staged_number from hefesto_staged_0)`, registered for every slot of
+     * [StagedValues.SLOTS] with the slot of the table as suffix, see [StagedValues]
+     */
+    const val STAGED_NUMBER = "hefesto_staged_number"
+
+    /**
+     * Same as [STAGED_NUMBER] for the strings
+     */
+    const val STAGED_TEXT = "hefesto_staged_text"
+
+    private val bigintArray = ArrayParameterType("bigint")
+    private val integerArray = ArrayParameterType("integer")
+    private val uuidArray = ArrayParameterType("uuid")
+
+    /**
+     * Checks if the database of the session can bind the values of a `whereInArray` as one array.
+     *
+     * @param session the session
+     * @return true on PostgreSQL and H2
+     */
+    @JvmStatic
+    fun supportsArrays(session: SharedSessionContract): Boolean {
+        return supportsArrays((session as SharedSessionContractImplementor).factory.jdbcServices.dialect)
+    }
+
+    /**
+     * Checks if the database can bind the values of a `whereInArray` as one array,
+     * the functions of the arrays are only contributed for these dialects.
+     *
+     * @param dialect the dialect of the factory
+     * @return true on PostgreSQL and H2
+     */
+    @JvmStatic
+    fun supportsArrays(dialect: Dialect): Boolean {
+        return dialect is PostgreSQLDialect || dialect is H2Dialect
+    }
+
+    /**
+     * Chooses the type of the array parameter of [ANY], by the type of the values.
+     *
+     * @param values the values of the where
+     * @return the type of the parameter, null when the values can't be bound as an array
+     */
+    @JvmStatic
+    fun arrayType(values: Collection<*>): ArrayParameterType? {
+        val types = values.filterNotNull().map { it.javaClass }.distinct()
+
+        return when {
+            types.isEmpty() -> null
+            types.all { it == Long::class.javaObjectType } -> bigintArray
+            types.all { it == Int::class.javaObjectType || it == Short::class.javaObjectType } -> integerArray
+            types.all { it == UUID::class.java } -> uuidArray
+            else -> null
+        }
+    }
+
+    /**
+     * Chooses the function that reads the staged values, by the type of the values and the slot of the table.
+     *
+     * @param values the values of the where
+     * @param slot the slot of the table, see [StagedValues.tableName]
+     * @return the name of the function, null when the values can't be staged
+     */
+    @JvmStatic
+    fun stagedFunction(values: Collection<*>, slot: Int): String? {
+        return when (StagedValues.columnOf(values)) {
+            StagedValues.NUMBER_COLUMN -> "${STAGED_NUMBER}_$slot"
+            StagedValues.TEXT_COLUMN -> "${STAGED_TEXT}_$slot"
+            else -> null
+        }
+    }
+
+    /**
+     * Creates the value of the array parameter of [ANY], the shorts are widened to integers.
+     *
+     * @param values the values of the where
+     * @return the values without the nulls
+     */
+    @JvmStatic
+    fun arrayParameter(values: Collection<*>): Array<Any> {
+        return values.filterNotNull().map { if (it is Short) it.toInt() else it }.toTypedArray()
+    }
+}
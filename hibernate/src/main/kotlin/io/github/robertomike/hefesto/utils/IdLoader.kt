@@ -0,0 +1,96 @@
+package io.github.robertomike.hefesto.utils
+
+import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+import org.hibernate.StatelessSession
+import java.math.BigDecimal
+import java.math.BigInteger
+
+/**
+ * Loads entities by their identifiers through the session instead of a query, shared by the criteria and HQL implementations.
+ * The session checks the persistence context and the second-level cache before going to the database.
+ */
+object IdLoader {
+    /**
+     * Loads the entity with the given id.
+     *
+     * @param session the session of the execution
+     * @param model the entity
+     * @param id the id, numbers are converted to the type of the id
+     * @param options the options with the cache mode
+     * @return the entity, null when it doesn't exist
+     */
+    @JvmStatic
+    fun <T> find(session: SharedSessionContract, model: Class<T>, id: Any, options: QueryOptions): T? {
+        val value = castId(session, model, id)
+
+        if (session is StatelessSession) {
+            return session.get(model, value)
+        }
+
+        val access = (session as Session).byId(model)
+        options.cacheMode?.let { access.with(it) }
+
+        return access.load(value)
+    }
+
+    /**
+     * Loads the entities with the given ids in batches, in the order of the ids.
+     * The ids without an entity are skipped.
+     *
+     * @param session the session of the execution
+     * @param model the entity
+     * @param ids the ids, numbers are converted to the type of the id
+     * @param options the options with the session check and the cache mode
+     * @param batchSize the maximum number of ids loaded in every query, null to use the Hibernate default
+     * @return the entities found
+     */
+    @JvmStatic
+    fun <T> findAll(session: Session, model: Class<T>, ids: Collection<*>, options: QueryOptions, batchSize: Int?): List<T> {
+        val access = session.byMultipleIds(model)
+            .enableOrderedReturn(true)
+            .enableSessionCheck(options.sessionCheck)
+        batchSize?.let { access.withBatchSize(it) }
+        options.cacheMode?.let { access.with(it) }
+
+        return access.multiLoad(castIds(session, model, ids)).filterNotNull()
+    }
+
+    /**
+     * Sorts the entities loaded by a query in the order of the ids.
+     *
+     * @param session the session of the execution
+     * @param model the entity
+     * @param entities the entities loaded in any order
+     * @param ids the ids in the expected order
+     * @return the entities in the order of the ids
+     */
+    @JvmStatic
+    fun <T> sortByIds(session: SharedSessionContract, model: Class<*>, entities: List<T>, ids: Collection<*>): List<T> {
+        return FetchUtils.sortByIds(entities, castIds(session, model, ids), FetchUtils.factoryOf(session))
+    }
+
+    private fun castIds(session: SharedSessionContract, model: Class<*>, ids: Collection<*>): List<Any> {
+        return ids.filterNotNull().map { castId(session, model, it) }.distinct()
+    }
+
+    /**
+     * Converts the numbers to the type of the id, so `findFirstById(1)` works with a Long id.
+     */
+    private fun castId(session: SharedSessionContract, model: Class<*>, id: Any): Any {
+        val type = FetchUtils.factoryOf(session).metamodel.entity(model).idType.javaType
+
+        if (id !is Number || type.isInstance(id)) {
+            return id
+        }
+
+        return when (type) {
+            Long::class.javaObjectType, Long::class.javaPrimitiveType -> id.toLong()
+            Int::class.javaObjectType, Int::class.javaPrimitiveType -> id.toInt()
+            Short::class.javaObjectType, Short::class.javaPrimitiveType -> id.toShort()
+            BigInteger::class.java -> BigInteger.valueOf(id.toLong())
+            BigDecimal::class.java -> BigDecimal(id.toString())
+            else -> id
+        }
+    }
+}
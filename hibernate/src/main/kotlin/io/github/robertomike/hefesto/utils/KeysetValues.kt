@@ -0,0 +1,133 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.Order
+import io.github.robertomike.hefesto.exceptions.QueryException
+import jakarta.persistence.EntityManagerFactory
+import jakarta.persistence.metamodel.ManagedType
+import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+import org.hibernate.StatelessSession
+import org.hibernate.proxy.HibernateProxy
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+
+/**
+ * Reads the values of the keyset pagination from the entities through the metamodel,
+ * shared by the criteria and HQL implementations.
+ *
+ * The ids are read with the persistence unit util, so an uninitialized proxy is never loaded for its id.
+ * The other values are read from the implementation of the proxy, when the proxy is detached and
+ * not initialized the entity is loaded by id, the only case where a session is needed.
+ */
+object KeysetValues {
+    /**
+     * Reads the values of the sort fields from a row.
+     *
+     * @param session the session of the execution
+     * @param row the last row of the page
+     * @param orders the sort definition
+     * @return the values in the same order of the sort definition
+     */
+    @JvmStatic
+    fun valuesOf(session: SharedSessionContract, row: Any, orders: List<Order>): List<Any?> {
+        return valuesOf(FetchUtils.factoryOf(session), row, orders) { type, id -> load(session, type, id) }
+    }
+
+    /**
+     * Reads the values of the sort fields from a row with the metamodel of the factory, without a session.
+     *
+     * @param factory the factory of the entities
+     * @param row the last row of the page
+     * @param orders the sort definition
+     * @param loader loads an entity by id, only called for the detached proxies that are not initialized
+     * @return the values in the same order of the sort definition
+     */
+    @JvmStatic
+    fun valuesOf(
+        factory: EntityManagerFactory,
+        row: Any,
+        orders: List<Order>,
+        loader: (Class<*>, Any) -> Any?
+    ): List<Any?> {
+        return orders.map { order ->
+            var current: Any? = row
+            for (name in order.field.split(".")) {
+                if (current == null) {
+                    break
+                }
+                current = read(factory, loader, current, name)
+            }
+            current
+        }
+    }
+
+    private fun read(factory: EntityManagerFactory, loader: (Class<*>, Any) -> Any?, value: Any, name: String): Any? {
+        val type = classOf(value)
+        val model = try {
+            factory.metamodel.managedType(type)
+        } catch (e: IllegalArgumentException) {
+            throw QueryException("${type.name} is not managed, it can't be used for keyset pagination")
+        }
+
+        if (FetchUtils.idName(model) == name) {
+            return factory.persistenceUnitUtil.getIdentifier(value)
+        }
+
+        return readMember(model, unproxy(loader, value, type), name)
+    }
+
+    private fun readMember(model: ManagedType<*>, value: Any, name: String): Any? {
+        val attribute = try {
+            model.getAttribute(name)
+        } catch (e: IllegalArgumentException) {
+            throw QueryException("The field '$name' doesn't exist in ${model.javaType.name}, it can't be used for keyset pagination")
+        }
+
+        return when (val member = attribute.javaMember) {
+            is Field -> {
+                member.isAccessible = true
+                member.get(value)
+            }
+            is Method -> {
+                member.isAccessible = true
+                member.invoke(value)
+            }
+            else -> throw QueryException("The field '$name' of ${model.javaType.name} can't be read for keyset pagination")
+        }
+    }
+
+    private fun classOf(value: Any): Class<*> {
+        return if (value is HibernateProxy) value.hibernateLazyInitializer.persistentClass else value.javaClass
+    }
+
+    private fun unproxy(loader: (Class<*>, Any) -> Any?, value: Any, type: Class<*>): Any {
+        if (value !is HibernateProxy) {
+            return value
+        }
+
+        val initializer = value.hibernateLazyInitializer
+        if (!initializer.isUninitialized || initializer.session?.isOpen == true) {
+            return initializer.implementation
+        }
+
+        return loader(type, initializer.identifier)
+            ?: throw QueryException("The row of ${type.name} used for keyset pagination doesn't exist")
+    }
+
+    /**
+     * Loads the entity by id in the session.
+     *
+     * @param session the session of the execution
+     * @param type the class of the entity
+     * @param id the identifier of the entity
+     * @return the entity, null when it doesn't exist
+     */
+    @JvmStatic
+    fun load(session: SharedSessionContract, type: Class<*>, id: Any): Any? {
+        return when (session) {
+            is Session -> session.get(type, id)
+            is StatelessSession -> session.get(type, id)
+            else -> null
+        }
+    }
+}
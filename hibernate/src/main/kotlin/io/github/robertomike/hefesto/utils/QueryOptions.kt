@@ -0,0 +1,165 @@
+package io.github.robertomike.hefesto.utils
+
+import jakarta.persistence.EntityGraph
+import org.hibernate.CacheMode
+import org.hibernate.FlushMode
+import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+import org.hibernate.jpa.HibernateHints
+import org.hibernate.jpa.SpecHints
+import org.hibernate.query.Query
+import java.util.stream.Stream
+
+/**
+ * Options that change how the builder executes the queries, shared by the criteria and HQL implementations.
+ */
+class QueryOptions {
+    /**
+     * When true the queries run through a [org.hibernate.StatelessSession]
+     */
+    var stateless: Boolean = false
+
+    /**
+     * When true the entities are loaded as read-only and the session is not flushed before the query
+     */
+    var readOnly: Boolean = false
+
+    /**
+     * The number of rows the JDBC driver fetches in every round trip, null to use the driver default
+     */
+    var fetchSize: Int? = null
+
+    /**
+     * When streaming with a stateful session, evicts the rows returned every time this number of rows was read
+     */
+    var clearEvery: Int? = null
+
+    /**
+     * When true the pagination loads the total in the same query of the page with a window function
+     */
+    var windowCount: Boolean = false
+
+    /**
+     * The relationships loaded with secondary queries after the main query, see [BatchLoader]
+     */
+    val batchFetches: MutableList<String> = mutableListOf()
+
+    /**
+     * The maximum number of parent ids in every secondary query of [batchFetches]
+     */
+    var batchSize: Int = 100
+
+    /**
+     * The relationships loaded with the strategy chosen by [FetchPlanner]
+     */
+    val plannedFetches: MutableList<String> = mutableListOf()
+
+    /**
+     * The plan of the last execution with [plannedFetches], null before the first one
+     */
+    @Volatile
+    var fetchPlan: FetchPlan? = null
+
+    /**
+     * Creates the entity graph applied to the queries that load entities, null to not use a graph
+     */
+    var entityGraph: ((SharedSessionContract) -> EntityGraph<*>)? = null
+
+    /**
+     * The hint used for the [entityGraph], fetch graph or load graph
+     */
+    var graphHint: String = SpecHints.HINT_SPEC_FETCH_GRAPH
+
+    /**
+     * How the queries and the id loads interact with the second-level cache, null to use the session default
+     */
+    var cacheMode: CacheMode? = null
+
+    /**
+     * When true `findAllByIds` takes the entities already in the persistence context instead of loading them again
+     */
+    var sessionCheck: Boolean = true
+
+    /**
+     * When true the update and delete statements remove the entities of the model from the session and the second-level cache
+     */
+    var evictOnWrite: Boolean = false
+
+    /**
+     * True when the options change how the entities are loaded, so they can't be loaded by id through the session
+     */
+    val changesLoading: Boolean
+        get() = readOnly || entityGraph != null || plannedFetches.isNotEmpty() || batchFetches.isNotEmpty()
+
+    /**
+     * Executes the block with the session that must run the query.
+     * When [stateless] is enabled a StatelessSession is opened from the factory of the session and closed at the end.
+     *
+     * @param session the session resolved from the provider
+     * @param block the execution
+     * @return the result of the block
+     */
+    fun <R> execute(session: Session, block: (SharedSessionContract) -> R): R {
+        if (!stateless) {
+            return block(session)
+        }
+
+        val statelessSession = session.sessionFactory.openStatelessSession()
+        try {
+            return block(statelessSession)
+        } finally {
+            statelessSession.close()
+        }
+    }
+
+    /**
+     * Same as [execute] for the executions that return a stream,
+     * the StatelessSession is closed when the stream is closed.
+     *
+     * @param session the session resolved from the provider
+     * @param block the execution that creates the stream
+     * @return the stream created by the block
+     */
+    fun <R> stream(session: Session, block: (SharedSessionContract) -> Stream<R>): Stream<R> {
+        if (!stateless) {
+            return block(session)
+        }
+
+        val statelessSession = session.sessionFactory.openStatelessSession()
+        try {
+            return block(statelessSession).onClose { statelessSession.close() }
+        } catch (e: Throwable) {
+            statelessSession.close()
+            throw e
+        }
+    }
+
+    /**
+     * Applies the options to the query before executing it.
+     *
+     * @param query the query created by the executor
+     * @return the same query
+     */
+    fun <R> apply(query: Query<R>): Query<R> {
+        if (readOnly) {
+            query.setReadOnly(true)
+            query.setHint(HibernateHints.HINT_READ_ONLY, true)
+            query.setHibernateFlushMode(FlushMode.MANUAL)
+        }
+        fetchSize?.let { query.setFetchSize(it) }
+        cacheMode?.let { query.setCacheMode(it) }
+        return query
+    }
+
+    /**
+     * Applies the [entityGraph] to a query that loads entities.
+     *
+     * @param session the session of the query, used to create the graph
+     * @param query the query created by the executor
+     * @return the same query
+     */
+    fun <R> applyGraph(session: SharedSessionContract, query: Query<R>): Query<R> {
+        entityGraph?.let { query.setHint(graphHint, it(session)) }
+        return query
+    }
+}
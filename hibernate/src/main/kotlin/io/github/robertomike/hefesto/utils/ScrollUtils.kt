@@ -0,0 +1,74 @@
+package io.github.robertomike.hefesto.utils
+
+import org.hibernate.ScrollMode
+import org.hibernate.Session
+import org.hibernate.SharedSessionContract
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+import org.hibernate.query.Query
+import java.util.Spliterator
+import java.util.Spliterators
+import java.util.stream.Stream
+import java.util.stream.StreamSupport
+
+/**
+ * Utilities to consume the queries with a forward only cursor.
+ */
+object ScrollUtils {
+    /**
+     * Creates a lazy stream over the results of the query using [ScrollMode.FORWARD_ONLY].
+     * The cursor is closed when the stream is closed.
+     *
+     * @param query the query to scroll, with the options already applied
+     * @param session the session that created the query
+     * @param clearEvery when set and the session is stateful, the entities returned by the stream are evicted
+     * every time this number of rows was read, the other entities of the session are never touched
+     * @return the stream of results
+     */
+    @JvmStatic
+    fun <R> stream(query: Query<R>, session: SharedSessionContract, clearEvery: Int?): Stream<R> {
+        val results = query.scroll(ScrollMode.FORWARD_ONLY)
+        val statefulSession = session as? Session
+
+        val iterator = object : Iterator<R> {
+            private var hasRow: Boolean? = null
+            private val returned = ArrayList<Any>()
+
+            override fun hasNext(): Boolean {
+                if (hasRow == null) {
+                    // The rows already returned are not used anymore, so they can leave the persistence context
+                    if (clearEvery != null && statefulSession != null && returned.size >= clearEvery) {
+                        returned.forEach { evict(statefulSession, it) }
+                        returned.clear()
+                    }
+                    hasRow = results.next()
+                }
+                return hasRow!!
+            }
+
+            override fun next(): R {
+                if (!hasNext()) {
+                    throw NoSuchElementException()
+                }
+                hasRow = null
+                val row = results.get()
+                if (clearEvery != null && statefulSession != null && row != null) {
+                    returned.add(row)
+                }
+                return row
+            }
+        }
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+            .onClose { results.close() }
+    }
+
+    /**
+     * Evicts the entities of a row, the values that are not managed by the session, like the DTOs, are skipped.
+     */
+    private fun evict(session: Session, row: Any?) {
+        when {
+            row is Array<*> -> row.forEach { evict(session, it) }
+            row != null && (session as SharedSessionContractImplementor).persistenceContextInternal.getEntry(row) != null -> session.evict(row)
+        }
+    }
+}
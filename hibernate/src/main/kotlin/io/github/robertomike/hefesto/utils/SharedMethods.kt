@@ -9,8 +9,15 @@ import io.github.robertomike.hefesto.constructors.ConstructJoin
 import io.github.robertomike.hefesto.constructors.ConstructWhere
 import io.github.robertomike.hefesto.enums.JoinOperator
 import io.github.robertomike.hefesto.enums.Operator
+import io.github.robertomike.hefesto.exceptions.QueryException
 import io.github.robertomike.hefesto.models.BaseModel
+import jakarta.persistence.EntityGraph
 import jakarta.persistence.criteria.JoinType
+import org.hibernate.CacheMode
+import org.hibernate.SharedSessionContract
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+import org.hibernate.jpa.SpecHints
+import java.util.function.Consumer
 
 /**
  * This class is used to build a WHERE clause.
@@ -23,6 +30,7 @@ interface SharedMethods<B : BaseBuilder<*, *, *, *, *, *, *, *>> {
     val joins: ConstructJoin
     val wheres: ConstructWhere
     val joinsFetch: Construct<JoinFetch>
+    val queryOptions: QueryOptions
 
     /**
      * Returns the model.
@@ -116,4 +124,240 @@ interface SharedMethods<B : BaseBuilder<*, *, *, *, *, *, *, *>> {
         joinsFetch.add(JoinFetch.make(relationship, joinType))
         return this as B
     }
+
+    /**
+     * Loads the relationships with secondary queries after the main query instead of a join fetch,
+     * one query for every chunk of parent ids and relationship, so fetching many collections doesn't multiply the rows.
+     * Nested relationships use the path from the root, for example "posts.comments".
+     * Only works with a stateful session.
+     *
+     * @param relationships the relationships to load
+     * @return the updated builder
+     */
+    fun withBatch(vararg relationships: String): B {
+        queryOptions.batchFetches.addAll(relationships)
+        return this as B
+    }
+
+    /**
+     * Same as [withBatch] with the maximum number of parent ids in every secondary query.
+     *
+     * @param batchSize the maximum number of parent ids per query
+     * @param relationships the relationships to load
+     * @return the updated builder
+     */
+    fun withBatch(batchSize: Int, vararg relationships: String): B {
+        queryOptions.batchSize = batchSize
+        return withBatch(*relationships)
+    }
+
+    /**
+     * Loads the relationships choosing the strategy from the metamodel:
+     * to-one relationships and the first collection are join fetched, the other collections
+     * and the nested paths are loaded with batch queries like [withBatch].
+     * The decisions of the last execution are available with [fetchPlan].
+     * Only works with a stateful session when something is batched.
+     *
+     * @param relationships the relationships to load, for example "owner" or "posts.comments"
+     * @return the updated builder
+     */
+    fun withPlanned(vararg relationships: String): B {
+        queryOptions.plannedFetches.addAll(relationships)
+        return this as B
+    }
+
+    /**
+     * The plan used by the last execution with [withPlanned], null before the first one.
+     */
+    val fetchPlan: FetchPlan?
+        get() = queryOptions.fetchPlan
+
+    /**
+     * How the lists of the `whereIn` were bound by the last execution, see [InListStrategy].
+     */
+    val inListPlans: List<InListPlan>
+        get() = wheres.inListPlans
+
+    /**
+     * Loads the relationships of the entity graph with the `jakarta.persistence.fetchgraph` hint,
+     * the attributes not in the graph are loaded lazily.
+     * Hibernate adds the joins of the graph, so the count and the wheres are not affected.
+     *
+     * @param graph the entity graph
+     * @return the updated builder
+     */
+    fun withGraph(graph: EntityGraph<*>): B {
+        queryOptions.entityGraph = { graph }
+        queryOptions.graphHint = SpecHints.HINT_SPEC_FETCH_GRAPH
+        return this as B
+    }
+
+    /**
+     * Same as [withGraph] with a named entity graph of the model.
+     *
+     * @param name the name of the entity graph
+     * @return the updated builder
+     */
+    fun withGraph(name: String): B {
+        queryOptions.entityGraph = { namedGraph(it, name) }
+        queryOptions.graphHint = SpecHints.HINT_SPEC_FETCH_GRAPH
+        return this as B
+    }
+
+    /**
+     * Loads the relationships of the entity graph with the `jakarta.persistence.loadgraph` hint,
+     * the attributes not in the graph keep the fetch type of the mapping.
+     *
+     * @param graph the entity graph
+     * @return the updated builder
+     */
+    fun withLoadGraph(graph: EntityGraph<*>): B {
+        queryOptions.entityGraph = { graph }
+        queryOptions.graphHint = SpecHints.HINT_SPEC_LOAD_GRAPH
+        return this as B
+    }
+
+    /**
+     * Same as [withLoadGraph] with a named entity graph of the model.
+     *
+     * @param name the name of the entity graph
+     * @return the updated builder
+     */
+    fun withLoadGraph(name: String): B {
+        queryOptions.entityGraph = { namedGraph(it, name) }
+        queryOptions.graphHint = SpecHints.HINT_SPEC_LOAD_GRAPH
+        return this as B
+    }
+
+    /**
+     * Creates a fetch graph with the given relationships, nested relationships use dots.
+     *
+     * ```java
+     * .fetchGraph(graph -> graph.add("pets", "posts.comments"))
+     * ```
+     *
+     * @param configurator the configurator of the graph
+     * @return the updated builder
+     */
+    fun fetchGraph(configurator: Consumer<FetchGraph>): B {
+        val graph = FetchGraph()
+        configurator.accept(graph)
+
+        val entity = model
+        queryOptions.entityGraph = { graph.build(it, entity) }
+        queryOptions.graphHint = SpecHints.HINT_SPEC_FETCH_GRAPH
+        return this as B
+    }
+
+    private fun namedGraph(session: SharedSessionContract, name: String): EntityGraph<*> {
+        return (session as SharedSessionContractImplementor).factory.findEntityGraphByName(name)
+            ?: throw QueryException("The entity graph $name doesn't exist")
+    }
+
+    /**
+     * Sets how the queries, `findFirstById` and `findAllByIds` use the second-level cache.
+     *
+     * @param cacheMode the cache mode, for example [CacheMode.IGNORE] to always read from the database
+     * @return the updated builder
+     */
+    fun cacheMode(cacheMode: CacheMode): B {
+        queryOptions.cacheMode = cacheMode
+        return this as B
+    }
+
+    /**
+     * Makes `findAllByIds` load all the ids from the cache or the database,
+     * even the entities already in the persistence context.
+     *
+     * @return the updated builder
+     */
+    fun skipSessionCheck(): B {
+        queryOptions.sessionCheck = false
+        return this as B
+    }
+
+    /**
+     * After an update or delete statement, removes the entities of the model from the session
+     * and the second-level cache, so the next reads see the new values.
+     * The bulk statements skip the persistence context, without this the loaded entities keep the old values.
+     *
+     * @return the updated builder
+     */
+    fun evictOnWrite(): B {
+        queryOptions.evictOnWrite = true
+        return this as B
+    }
+
+    /**
+     * Runs the queries through a StatelessSession, the results are not attached to any persistence context.
+     * Useful for big read-only results, but the lazy relationships can't be loaded after the query,
+     * use [with] for the relationships you need.
+     *
+     * @return the updated builder
+     */
+    fun stateless(): B {
+        queryOptions.stateless = true
+        return this as B
+    }
+
+    /**
+     * Alias of [stateless]
+     *
+     * @return the updated builder
+     */
+    fun useStatelessSession(): B {
+        return stateless()
+    }
+
+    /**
+     * Loads the entities as read-only: Hibernate doesn't keep the snapshots for the dirty checking
+     * and doesn't flush the session before running the query.
+     * Changes made to the returned entities are not saved.
+     *
+     * @return the updated builder
+     */
+    fun readOnly(): B {
+        queryOptions.readOnly = true
+        return this as B
+    }
+
+    /**
+     * Sets the number of rows the JDBC driver fetches in every round trip.
+     * Mostly useful with [io.github.robertomike.hefesto.builders.BaseBuilder.stream].
+     *
+     * @param fetchSize the number of rows per round trip
+     * @return the updated builder
+     */
+    fun fetchSize(fetchSize: Int): B {
+        queryOptions.fetchSize = fetchSize
+        return this as B
+    }
+
+    /**
+     * While streaming with a stateful session, evicts the entities returned by the stream every time
+     * the given number of rows was read, so the persistence context doesn't grow with the whole result.
+     * The session is never cleared, the other entities of the caller stay managed with their pending changes.
+     * The rows already consumed become detached, including the ones that were loaded before the stream,
+     * so their changes must be flushed before they are streamed.
+     *
+     * @param rows the number of rows between every clear
+     * @return the updated builder
+     */
+    fun clearEvery(rows: Int): B {
+        queryOptions.clearEvery = rows
+        return this as B
+    }
+
+    /**
+     * Makes the pagination load the total with `count(*) over()` in the same query of the page,
+     * so only one round trip is needed.
+     * Falls back to a separate count query when the query has selects, group by or fetch joins,
+     * and when the requested page is empty.
+     *
+     * @return the updated builder
+     */
+    fun windowCount(): B {
+        queryOptions.windowCount = true
+        return this as B
+    }
 }
@@ -0,0 +1,356 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.wheres.BaseWhere
+import io.github.robertomike.hefesto.actions.wheres.CollectionWhere
+import io.github.robertomike.hefesto.actions.wheres.Where
+import io.github.robertomike.hefesto.actions.wheres.WhereExist
+import io.github.robertomike.hefesto.actions.wheres.WhereStaged
+import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.exceptions.QueryException
+import org.hibernate.SharedSessionContract
+import org.hibernate.dialect.Dialect
+import org.hibernate.dialect.H2Dialect
+import org.hibernate.dialect.MySQLDialect
+import org.hibernate.dialect.PostgreSQLDialect
+import org.hibernate.dialect.SQLServerDialect
+import org.hibernate.dialect.temptable.TemporaryTableKind
+import org.hibernate.engine.spi.SharedSessionContractImplementor
+import java.sql.Connection
+import java.sql.SQLException
+import java.sql.Types
+import java.util.*
+import java.util.stream.Stream
+
+/**
+ * Stages the values of the `whereInStaged` in temporary tables, shared by the criteria and HQL implementations.
+ *
+ * Before the execution every `whereInStaged` gets its own table in the connection of the session,
+ * named with the first slot free in that connection, and the values are inserted with JDBC batches:
+ * ```sql
+ * create temporary table hefesto_staged_0 (staged_number bigint, staged_text varchar(255))
+ * ```
+ * The wheres read the values with a sub-query, see [HefestoFunctions.stagedFunction],
+ * and the tables are dropped after the execution, so the slots can be used again.
+ * On H2 the tables are kept in the connection and emptied instead, dropping a table commits the transaction there.
+ * Separate tables let MySQL read more than one in the same statement, and the executions opened while
+ * a stream is still reading its table use other slots.
+ *
+ * The slots of an execution are kept in a map passed to the construction of the query, the wheres are never changed.
+ * The DDL never commits the transaction of the session: on the dialects where it would, see [transactional],
+ * the values can't be staged while a transaction is active.
+ */
+object StagedValues {
+    const val TABLE = "hefesto_staged"
+    const val NUMBER_COLUMN = "staged_number"
+    const val TEXT_COLUMN = "staged_text"
+
+    /**
+     * The tables that can be staged at the same time in a connection, the functions of every slot
+     * are contributed to the session factory
+     */
+    const val SLOTS = 16
+
+    private const val BATCH_SIZE = 1000
+    private const val TEXT_LENGTH = 255
+
+    /**
+     * The slots of the tables staged in every connection
+     */
+    private val connections = WeakHashMap<Connection, BitSet>()
+
+    /**
+     * Executes the block with the values of the wheres staged, the tables are dropped at the end.
+     * When the block fails the errors of the drop are added as suppressed.
+     *
+     * @param session the session of the execution
+     * @param wheres the wheres of the builder
+     * @param block the execution, it receives the slot of every staged where
+     * @return the result of the block
+     */
+    @JvmStatic
+    fun <R> execute(session: SharedSessionContract, wheres: List<BaseWhere>, block: (Map<WhereStaged, Int>) -> R): R {
+        val slots = IdentityHashMap<WhereStaged, Int>()
+        val release = stage(session, wheres, slots)
+        val result = try {
+            block(slots)
+        } catch (e: Throwable) {
+            releaseAfter(e, release)
+            throw e
+        }
+        release.run()
+        return result
+    }
+
+    /**
+     * Same as [execute] for the executions that return a stream, the tables are dropped when the stream is closed.
+     *
+     * @param session the session of the execution
+     * @param wheres the wheres of the builder
+     * @param block the execution that creates the stream, it receives the slot of every staged where
+     * @return the stream created by the block
+     */
+    @JvmStatic
+    fun <R> stream(
+        session: SharedSessionContract,
+        wheres: List<BaseWhere>,
+        block: (Map<WhereStaged, Int>) -> Stream<R>
+    ): Stream<R> {
+        val slots = IdentityHashMap<WhereStaged, Int>()
+        val release = stage(session, wheres, slots)
+        try {
+            return block(slots).onClose(release)
+        } catch (e: Throwable) {
+            releaseAfter(e, release)
+            throw e
+        }
+    }
+
+    /**
+     * Stages the values of the wheres, including the ones of the sub-queries.
+     *
+     * @param session the session of the execution
+     * @param wheres the wheres of the builder
+     * @param slots the map where the slot of every staged where is put
+     * @return the action that drops the tables, it must be run after the execution
+     */
+    @JvmStatic
+    fun stage(session: SharedSessionContract, wheres: List<BaseWhere>, slots: MutableMap<WhereStaged, Int>): Runnable {
+        val staged = collect(wheres).filter { columnOf(it.values) != null }
+        if (staged.isEmpty()) {
+            return Runnable { }
+        }
+
+        val implementor = session as SharedSessionContractImplementor
+        val dialect = implementor.factory.jdbcServices.dialect
+        if (implementor.isTransactionInProgress && !transactional(dialect)) {
+            throw QueryException(
+                "whereInStaged can't be used in a transaction on ${dialect.javaClass.simpleName}, " +
+                        "creating its temporary tables would commit the transaction"
+            )
+        }
+
+        val connection = implementor.jdbcCoordinator.logicalConnection.physicalConnection
+        val releases = ArrayList<Runnable>()
+        val release = Runnable { releaseAll(releases) }
+
+        try {
+            staged.forEach { where ->
+                val slot = acquire(connection)
+                val table = tableName(dialect, slot)
+
+                try {
+                    run(implementor, "create $table") {
+                        connection.createStatement().use { it.execute(createTable(dialect, table, where.values)) }
+                    }
+                } catch (e: Throwable) {
+                    free(connection, slot)
+                    throw e
+                }
+                releases.add(Runnable {
+                    try {
+                        drop(implementor, connection, dialect, table)
+                    } finally {
+                        free(connection, slot)
+                    }
+                })
+
+                run(implementor, "insert into $table") { insert(connection, table, where) }
+                slots[where] = slot
+            }
+        } catch (e: Throwable) {
+            releaseAfter(e, release)
+            throw e
+        }
+
+        return release
+    }
+
+    /**
+     * Checks if the wheres, including the ones of the sub-queries, have values that are staged by [stage].
+     *
+     * @param wheres the wheres of the builder
+     * @return true when a temporary table is needed
+     */
+    @JvmStatic
+    fun hasStaged(wheres: List<BaseWhere>): Boolean {
+        return collect(wheres).any { columnOf(it.values) != null }
+    }
+
+    /**
+     * Chooses the column of the values.
+     *
+     * @param values the values of the where
+     * @return the column, null when the values can't be staged
+     */
+    @JvmStatic
+    fun columnOf(values: Collection<*>): String? {
+        val present = values.filterNotNull()
+
+        return when {
+            present.isEmpty() -> null
+            present.all { it is Long || it is Int || it is Short } -> NUMBER_COLUMN
+            present.all { it is String } -> TEXT_COLUMN
+            else -> null
+        }
+    }
+
+    /**
+     * The name of the temporary table of the slot, SQL Server needs the `#` prefix.
+     *
+     * @param dialect the dialect of the factory
+     * @param slot the slot of the table in the connection
+     * @return the name of the table
+     */
+    @JvmStatic
+    fun tableName(dialect: Dialect, slot: Int): String {
+        val table = "${TABLE}_$slot"
+        return if (dialect is SQLServerDialect) "#$table" else table
+    }
+
+    /**
+     * Checks if the temporary tables can be created and released without committing the transaction.
+     * The DDL is transactional on PostgreSQL and SQL Server, MySQL doesn't commit the statements
+     * of the temporary tables and H2 creates them as transactional and never drops them.
+     *
+     * @param dialect the dialect of the factory
+     * @return true when the values can be staged in a transaction
+     */
+    @JvmStatic
+    fun transactional(dialect: Dialect): Boolean {
+        return dialect is H2Dialect || dialect is MySQLDialect || dialect is PostgreSQLDialect || dialect is SQLServerDialect
+    }
+
+    private fun collect(wheres: List<BaseWhere>): List<WhereStaged> {
+        return wheres.flatMap {
+            when (it) {
+                is CollectionWhere -> collect(it.wheres)
+                is WhereExist -> collect(it.subQuery.wheres)
+                is WhereStaged -> listOf(it)
+                is Where -> (it.value as? BaseBuilder<*, *, *, *, *, *, *, *>)?.let { builder -> collect(builder.wheres) } ?: emptyList()
+                else -> emptyList()
+            }
+        }
+    }
+
+    private fun acquire(connection: Connection): Int {
+        synchronized(connections) {
+            val used = connections.getOrPut(connection) { BitSet() }
+            val slot = used.nextClearBit(0)
+            if (slot >= SLOTS) {
+                throw QueryException("A connection can't have more than $SLOTS whereInStaged staged at the same time")
+            }
+            used.set(slot)
+            return slot
+        }
+    }
+
+    private fun free(connection: Connection, slot: Int) {
+        synchronized(connections) {
+            val used = connections[connection] ?: return
+            used.clear(slot)
+            if (used.isEmpty) {
+                connections.remove(connection)
+            }
+        }
+    }
+
+    /**
+     * Runs the actions in reverse order, all of them run even when one fails.
+     */
+    private fun releaseAll(releases: List<Runnable>) {
+        var error: Throwable? = null
+
+        for (release in releases.asReversed()) {
+            try {
+                release.run()
+            } catch (e: Throwable) {
+                if (error == null) error = e else error.addSuppressed(e)
+            }
+        }
+        if (error != null) {
+            throw error
+        }
+    }
+
+    /**
+     * Releases the tables after a failed execution, keeping the original error.
+     */
+    private fun releaseAfter(error: Throwable, release: Runnable) {
+        try {
+            release.run()
+        } catch (e: Throwable) {
+            error.addSuppressed(e)
+        }
+    }
+
+    /**
+     * H2 commits the transaction when a table is created unless it's transactional, the table is created
+     * once in the connection and its text column has no length, so it fits the values of every execution.
+     * On the other dialects the text column is as long as the longest value, so the values are never truncated.
+     */
+    private fun createTable(dialect: Dialect, table: String, values: Collection<*>): String {
+        if (dialect is H2Dialect) {
+            return "create local temporary table if not exists $table ($NUMBER_COLUMN bigint, $TEXT_COLUMN varchar) transactional"
+        }
+
+        val length = maxOf(TEXT_LENGTH, values.maxOfOrNull { (it as? String)?.length ?: 0 } ?: 0)
+        return "${dialect.temporaryTableCreateCommand} $table ($NUMBER_COLUMN bigint, $TEXT_COLUMN varchar($length))"
+    }
+
+    private fun insert(connection: Connection, table: String, where: WhereStaged) {
+        connection.prepareStatement("insert into $table ($NUMBER_COLUMN, $TEXT_COLUMN) values (?, ?)").use { statement ->
+            val number = columnOf(where.values) == NUMBER_COLUMN
+            var pending = 0
+
+            where.values.filterNotNull().distinct().forEach { value ->
+                if (number) {
+                    statement.setLong(1, (value as Number).toLong())
+                    statement.setNull(2, Types.VARCHAR)
+                } else {
+                    statement.setNull(1, Types.BIGINT)
+                    statement.setString(2, value as String)
+                }
+                statement.addBatch()
+
+                if (++pending == BATCH_SIZE) {
+                    statement.executeBatch()
+                    pending = 0
+                }
+            }
+
+            if (pending > 0) {
+                statement.executeBatch()
+            }
+        }
+    }
+
+    /**
+     * H2 commits the transaction when a table is dropped, so its tables are only emptied.
+     * MySQL needs the temporary keyword to not commit, and the global temporary tables keep
+     * the rows of the session until they are truncated.
+     */
+    private fun drop(session: SharedSessionContractImplementor, connection: Connection, dialect: Dialect, table: String) {
+        run(session, "drop $table") {
+            connection.createStatement().use {
+                when {
+                    dialect is H2Dialect -> it.execute("delete from $table")
+                    dialect is MySQLDialect -> it.execute("drop temporary table $table")
+                    else -> {
+                        if (dialect.supportedTemporaryTableKind == TemporaryTableKind.GLOBAL) {
+                            it.execute("${dialect.temporaryTableTruncateCommand} $table")
+                        }
+                        it.execute("${dialect.temporaryTableDropCommand} $table")
+                    }
+                }
+            }
+        }
+    }
+
+    private fun run(session: SharedSessionContractImplementor, sql: String, block: () -> Unit) {
+        try {
+            block()
+        } catch (e: SQLException) {
+            throw session.jdbcServices.sqlExceptionHelper.convert(e, "Could not stage the values of whereInStaged", sql)
+        }
+    }
+}
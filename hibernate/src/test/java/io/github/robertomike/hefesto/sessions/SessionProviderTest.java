@@ -0,0 +1,57 @@
+package io.github.robertomike.hefesto.sessions;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionProviderTest {
+    @Mock
+    private SessionFactory sessionFactory;
+    @Mock
+    private Session session;
+
+    @Test
+    void threadBoundReusesSessionInSameThread() {
+        when(sessionFactory.openSession()).thenReturn(session);
+        when(session.isOpen()).thenReturn(true);
+        var provider = new ThreadBoundSessionProvider(sessionFactory);
+
+        assertSame(session, provider.getSession());
+        assertSame(session, provider.getSession());
+        provider.closeCurrentSession();
+
+        verify(sessionFactory, times(1)).openSession();
+        verify(session).close();
+    }
+
+    @Test
+    void transactionBoundUsesCurrentSession() {
+        when(sessionFactory.getCurrentSession()).thenReturn(session);
+        var provider = new TransactionBoundSessionProvider(sessionFactory);
+
+        assertSame(session, provider.getSession());
+        provider.releaseSession(session);
+
+        verify(session, never()).close();
+    }
+
+    @Test
+    void sessionFactoryOpensAndClosesPerCall() {
+        when(sessionFactory.openSession()).thenReturn(session);
+        when(session.isOpen()).thenReturn(true);
+        var provider = new SessionFactorySessionProvider(sessionFactory);
+
+        provider.releaseSession(provider.getSession());
+        provider.releaseSession(provider.getSession());
+
+        verify(sessionFactory, times(2)).openSession();
+        verify(session, times(2)).close();
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.robertomike.hefesto.utils;
+
+import io.github.robertomike.hefesto.actions.GroupBy;
+import io.github.robertomike.hefesto.actions.Join;
+import io.github.robertomike.hefesto.actions.wheres.BaseWhere;
+import io.github.robertomike.hefesto.actions.wheres.Where;
+import io.github.robertomike.hefesto.enums.JoinOperator;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class CountPlannerTest {
+    @Mock
+    private ManagedType model;
+    @Mock
+    private ManagedType addressType;
+    @Mock
+    private SingularAttribute address;
+    @Mock
+    private PluralAttribute pets;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(model.getAttribute("address")).thenReturn((Attribute) address);
+        lenient().when(model.getAttribute("pets")).thenReturn((Attribute) pets);
+        lenient().when(address.isCollection()).thenReturn(false);
+        lenient().when(address.getType()).thenReturn(addressType);
+        lenient().when(pets.isCollection()).thenReturn(true);
+    }
+
+    @Test
+    void removesUnusedLeftToOneJoin() {
+        var plan = CountPlanner.plan(model, List.of(Join.make("address", JoinOperator.LEFT)), List.of(), List.of());
+
+        assertTrue(plan.getJoins().isEmpty());
+        assertFalse(plan.getDistinct());
+    }
+
+    @Test
+    void keepsReferencedJoin() {
+        var wheres = List.<BaseWhere>of(new Where("address.city", "Rome"));
+        var plan = CountPlanner.plan(model, List.of(Join.make("address", JoinOperator.LEFT)), wheres, List.of());
+
+        assertEquals(1, plan.getJoins().size());
+        assertFalse(plan.getDistinct());
+    }
+
+    @Test
+    void keepsJoinUsedInAnotherJoinCondition() {
+        var petsJoin = Join.make("pets", JoinOperator.LEFT);
+        petsJoin.getConditions().add(new Where("address.city", "Rome"));
+        var plan = CountPlanner.plan(model, List.of(Join.make("address", JoinOperator.LEFT), petsJoin), List.of(), List.of());
+
+        assertEquals(2, plan.getJoins().size());
+        assertTrue(plan.getDistinct());
+    }
+
+    @Test
+    void keepsJoinUsedInGroupBy() {
+        var groupBy = List.of(new GroupBy("address.city"));
+        var plan = CountPlanner.plan(model, List.of(Join.make("address", JoinOperator.LEFT)), List.of(), groupBy);
+
+        assertEquals(1, plan.getJoins().size());
+    }
+
+    @Test
+    void keepsInnerJoin() {
+        var plan = CountPlanner.plan(model, List.of(Join.make("address")), List.of(), List.of());
+
+        assertEquals(1, plan.getJoins().size());
+        assertFalse(plan.getDistinct());
+    }
+
+    @Test
+    void toManyJoinUsesDistinct() {
+        var plan = CountPlanner.plan(model, List.of(Join.make("pets", JoinOperator.LEFT)), List.of(), List.of());
+
+        assertEquals(1, plan.getJoins().size());
+        assertTrue(plan.getDistinct());
+    }
+}
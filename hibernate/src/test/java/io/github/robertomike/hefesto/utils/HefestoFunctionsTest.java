@@ -0,0 +1,40 @@
+package io.github.robertomike.hefesto.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HefestoFunctionsTest {
+    @Test
+    void arrayTypeByTypeOfValues() {
+        assertNotNull(HefestoFunctions.arrayType(List.of(1L, 2L)));
+        assertSame(HefestoFunctions.arrayType(List.of(1, 2)), HefestoFunctions.arrayType(List.of((short) 1, 2)));
+        assertNotSame(HefestoFunctions.arrayType(List.of(1L)), HefestoFunctions.arrayType(List.of(1)));
+        assertNotNull(HefestoFunctions.arrayType(List.of(UUID.randomUUID())));
+    }
+
+    @Test
+    void valuesThatCantBeAnArray() {
+        assertNull(HefestoFunctions.arrayType(List.of("a", "b")));
+        assertNull(HefestoFunctions.arrayType(List.of(1L, 2)));
+        assertNull(HefestoFunctions.arrayType(List.of()));
+    }
+
+    @Test
+    void arrayParameterSkipsNulls() {
+        assertArrayEquals(new Object[]{1L, 2L, 3L}, HefestoFunctions.arrayParameter(Arrays.asList(1L, null, 2L, 3L)));
+        assertArrayEquals(new Object[]{1, 2}, HefestoFunctions.arrayParameter(List.of((short) 1, 2)));
+    }
+
+    @Test
+    void stagedFunctionByTypeOfValues() {
+        assertEquals(HefestoFunctions.STAGED_NUMBER + "_0", HefestoFunctions.stagedFunction(List.of(1L, 2, (short) 3), 0));
+        assertEquals(HefestoFunctions.STAGED_TEXT + "_3", HefestoFunctions.stagedFunction(List.of("a", "b"), 3));
+        assertNull(HefestoFunctions.stagedFunction(List.of(1L, "a"), 0));
+        assertNull(HefestoFunctions.stagedFunction(List.of(UUID.randomUUID()), 0));
+    }
+}
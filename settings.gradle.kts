@@ -3,10 +3,12 @@ include("hibernate-criteria-builder")
 include("hibernate-query-language")
 include("hibernate")
 include("shared")
+include("coroutines")
 include("benchmarks")
 
 project(":shared").name = "hefesto-base"
 project(":hibernate-criteria-builder").name = "hefesto-hibernate"
 project(":hibernate-query-language").name = "hefesto-hibernate-hql"
 project(":hibernate").name = "hefesto-hibernate-base"
+project(":coroutines").name = "hefesto-coroutines"
 project(":benchmarks").name = "hefesto-benchmarks"
@@ -0,0 +1,35 @@
+package io.github.robertomike.hefesto.actions.wheres
+
+import io.github.robertomike.hefesto.enums.Operator
+import io.github.robertomike.hefesto.enums.WhereOperator
+
+/**
+ * Represents a WHERE IN condition bound as one array parameter instead of one parameter per value.
+ *
+ * On PostgreSQL and H2 the condition is rendered as `field = any(?)` with the values bound as one array,
+ * so the statement is the same for any number of values and the database parses and plans it only once.
+ * The other databases can't execute it.
+ *
+ * @property values the values to match, numbers or UUIDs
+ *
+ * Example:
+ * ```kotlin
+ * WhereInArray("id", listOf(1L, 2L, 3L))  // id = any(?)
+ * ```
+ */
+class WhereInArray(field: String, values: List<*>) : Where(field, Operator.IN, values) {
+
+    /**
+     * Constructor with explicit whereOperation for AND/OR chaining.
+     *
+     * @param field the field name
+     * @param values the values to match
+     * @param whereOperation the logical operator (AND/OR) to combine with previous conditions
+     */
+    constructor(field: String, values: List<*>, whereOperation: WhereOperator) : this(field, values) {
+        this.whereOperation = whereOperation
+    }
+
+    val values: List<*>
+        get() = value as List<*>
+}
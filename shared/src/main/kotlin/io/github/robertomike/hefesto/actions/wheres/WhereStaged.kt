@@ -0,0 +1,23 @@
+package io.github.robertomike.hefesto.actions.wheres
+
+import io.github.robertomike.hefesto.enums.Operator
+
+/**
+ * Represents a WHERE IN condition for very big lists of values, which are inserted in a temporary table
+ * before the query instead of being bound as parameters.
+ *
+ * The builder inserts the values with JDBC batches before the execution and the condition is rendered as
+ * `field in (select value from hefesto_staged_0)`, the temporary table is dropped after the execution.
+ * When the values are not staged, for example in the queries created but not executed by the builder, it's a standard IN.
+ *
+ * @property values the values to match, numbers or strings
+ *
+ * Example:
+ * ```kotlin
+ * WhereStaged("id", idsFromFile)  // id in (select staged_number from hefesto_staged_0)
+ * ```
+ */
+class WhereStaged(field: String, values: List<*>) : Where(field, Operator.IN, values) {
+    val values: List<*>
+        get() = value as List<*>
+}
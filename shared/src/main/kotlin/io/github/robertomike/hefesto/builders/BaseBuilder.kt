@@ -2,21 +2,39 @@ package io.github.robertomike.hefesto.builders
 
 import io.github.robertomike.hefesto.actions.GroupBy
 import io.github.robertomike.hefesto.actions.Join
+import io.github.robertomike.hefesto.actions.Order
 import io.github.robertomike.hefesto.actions.Select
+import io.github.robertomike.hefesto.actions.wheres.BaseWhere
+import io.github.robertomike.hefesto.actions.wheres.CollectionWhere
+import io.github.robertomike.hefesto.actions.wheres.Where
 import io.github.robertomike.hefesto.constructors.*
 import io.github.robertomike.hefesto.enums.JoinOperator
 import io.github.robertomike.hefesto.enums.Operator
 import io.github.robertomike.hefesto.enums.SelectOperator
+import io.github.robertomike.hefesto.enums.Sort
+import io.github.robertomike.hefesto.enums.WhereOperator
 import io.github.robertomike.hefesto.exceptions.QueryException
 import io.github.robertomike.hefesto.models.BaseModel
+import io.github.robertomike.hefesto.sessions.SessionProvider
+import io.github.robertomike.hefesto.sessions.StaticSessionProvider
 import io.github.robertomike.hefesto.utils.AggregateShortcuts
 import io.github.robertomike.hefesto.utils.ConditionalBuilder
+import io.github.robertomike.hefesto.utils.CountCache
+import io.github.robertomike.hefesto.utils.InListStrategy
+import io.github.robertomike.hefesto.utils.KeysetCursor
+import io.github.robertomike.hefesto.utils.KeysetPage
 import io.github.robertomike.hefesto.utils.Page
+import io.github.robertomike.hefesto.utils.Slice
 import io.github.robertomike.hefesto.utils.SortBuilder
 import io.github.robertomike.hefesto.utils.CastUtils.getClassInstance
 import jakarta.persistence.metamodel.SingularAttribute
 import kotlin.reflect.KProperty1
 import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.stream.Stream
 
 /**
  * This class is the base for all the hefesto versions
@@ -86,6 +104,11 @@ abstract class BaseBuilder<
      */
     var limit: Int? = null
 
+    /**
+     * When true the total of the count queries is read from the [CountCache]
+     */
+    private var useCountCache = false
+
     /**
      * constructor
      *
@@ -101,15 +124,106 @@ abstract class BaseBuilder<
     constructor()
 
     /**
-     * Returns the session associated with this object.
+     * Executes the block with a session resolved from the configured [SessionProvider],
+     * the session is handed back to the provider once the block finished.
+     *
+     * @param block the execution that needs the session
+     * @return the result of the block
+     */
+    protected fun <R> withSession(block: (SESSION) -> R): R {
+        val provider = resolveProvider() as SessionProvider<Any?>
+        val session = provider.getSession() ?: throw QueryException("Session is not set")
+        try {
+            return block(session as SESSION)
+        } finally {
+            provider.releaseSession(session)
+        }
+    }
+
+    /**
+     * Executes the block with a session resolved from the configured [SessionProvider],
+     * the session is handed back to the provider when the returned stream is closed.
+     *
+     * @param block the execution that creates the stream
+     * @return the stream created by the block
+     */
+    protected fun <R> streamWithSession(block: (SESSION) -> Stream<R>): Stream<R> {
+        val provider = resolveProvider() as SessionProvider<Any?>
+        val session = provider.getSession() ?: throw QueryException("Session is not set")
+        try {
+            return block(session as SESSION).onClose { provider.releaseSession(session) }
+        } catch (e: Throwable) {
+            provider.releaseSession(session)
+            throw e
+        }
+    }
+
+    /**
+     * Returns the provider of the executions in the current thread,
+     * the one forced with [withSessionProvider] or the global provider.
+     *
+     * @return the provider of the current executions
+     */
+    protected fun resolveProvider(): SessionProvider<*> {
+        return scopedProvider.get() ?: sessionProvider ?: throw QueryException("Session is not set")
+    }
+
+    /**
+     * Returns the provider used by the async executions.
+     * By default is the one set with [setAsyncSessionProvider] or the global provider.
+     *
+     * @return the provider for the async executions
+     */
+    open fun resolveAsyncSessionProvider(): SessionProvider<*> {
+        return asyncSessionProvider ?: resolveProvider()
+    }
+
+    /**
+     * Executes the block in the current thread resolving the sessions from the given provider
+     * instead of the global one. Used to run executions outside the thread that created the query.
      *
-     * @return the session associated with this object
+     * @param provider the provider for the executions inside the block
+     * @param block the execution to run
+     * @return the result of the block
      */
-    protected fun getSessionInstance(): SESSION {
-        if (session == null) {
-            throw QueryException("Session is not set")
+    fun <R> withSessionProvider(provider: SessionProvider<*>, block: () -> R): R {
+        val previous = scopedProvider.get()
+        scopedProvider.set(provider)
+        try {
+            return block()
+        } finally {
+            if (previous == null) {
+                scopedProvider.remove()
+            } else {
+                scopedProvider.set(previous)
+            }
+        }
+    }
+
+    /**
+     * Executes the block in the async executor, the sessions used inside the block
+     * are resolved from [resolveAsyncSessionProvider].
+     *
+     * @param block the execution to run
+     * @return a future completed with the result of the block
+     */
+    protected fun <R> supplyAsync(block: () -> R): CompletableFuture<R> {
+        val provider = resolveAsyncSessionProvider()
+        return CompletableFuture.supplyAsync({ withSessionProvider(provider, block) }, asyncExecutor)
+    }
+
+    /**
+     * Waits for the future and throws the original exception if the execution failed.
+     *
+     * @param future the future to wait for
+     * @return the result of the future
+     */
+    protected fun <R> await(future: CompletableFuture<R>): R {
+        try {
+            return future.join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
         }
-        return session as SESSION
     }
 
     /**
@@ -445,6 +559,86 @@ abstract class BaseBuilder<
      */
     abstract fun page(limit: Int, offset: Long): Page<Model>
 
+    /**
+     * Makes the count of [countResults] and [page] read from the cache set with [setCountCache].
+     * The cache is ignored when it's not set or the query has sub-queries, exists or custom conditions.
+     *
+     * @return the same instance
+     */
+    fun cacheCount(): BUILDER {
+        useCountCache = true
+        return this as BUILDER
+    }
+
+    /**
+     * Creates the key of the count query in the [CountCache].
+     *
+     * @param entity the queried entity, used to invalidate the totals
+     * @return the key, null when the cache is not used for this query
+     */
+    protected fun countCacheKey(entity: Class<*>): CountCache.Key? {
+        if (!useCountCache || countCache == null) {
+            return null
+        }
+        return CountCache.keyOf(entity, wheres, joins, groupBy)
+    }
+
+    /**
+     * Returns the total from the [CountCache] or executes the count,
+     * the concurrent executions with the same key run the count only once.
+     *
+     * @param key the key created with [countCacheKey], null to execute the count
+     * @param count the count query
+     * @return the total
+     */
+    protected fun cachedCount(key: CountCache.Key?, count: () -> Long): Long {
+        val cache = countCache
+        if (key == null || cache == null) {
+            return count()
+        }
+        return cache.get(key, count)
+    }
+
+    /**
+     * Retrieves the first slice of Model objects.
+     *
+     * @param limit the maximum number of objects to retrieve
+     * @return a slice of Model objects
+     */
+    fun slice(limit: Int): Slice<Model> {
+        return slice(limit, 0L)
+    }
+
+    /**
+     * Retrieves a slice of Model objects, unlike [page] the count query is never executed.
+     * One extra row is loaded to know if there are more results.
+     *
+     * @param limit  the maximum number of objects to retrieve
+     * @param offset the starting position of the objects to retrieve, it can't be greater than [Int.MAX_VALUE]
+     * @return a slice of Model objects
+     */
+    fun slice(limit: Int, offset: Long): Slice<Model> {
+        if (offset < 0 || offset > Int.MAX_VALUE) {
+            throw QueryException("The offset of the slice must be between 0 and ${Int.MAX_VALUE}, it was $offset")
+        }
+
+        val originalLimit = this.limit
+        val originalOffset = this.offset
+
+        try {
+            this.limit = limit + 1
+            this.offset = offset.toInt()
+
+            val results = get()
+            val hasNext = results.size > limit
+
+            return Slice(if (hasNext) results.subList(0, limit) else results, offset, hasNext)
+        } finally {
+            this.limit = originalLimit
+            this.offset = originalOffset
+        }
+    }
+
     /**
      * Retrieves a list of Model objects.
      *
@@ -452,6 +646,216 @@ abstract class BaseBuilder<
      */
     abstract fun get(): List<Model>
 
+    // ========== KEYSET PAGINATION ==========
+
+    /**
+     * Retrieves the first page using keyset (seek) pagination.
+     *
+     * @param limit the maximum number of objects to retrieve
+     * @return a page with the cursor to load the next one
+     * @see seek
+     */
+    fun seek(limit: Int): KeysetPage<Model> {
+        return seek(limit, null)
+    }
+
+    /**
+     * Retrieves the page that comes after the cursor using keyset (seek) pagination.
+     * Instead of skipping rows with an offset, the values of the last row are used as a filter,
+     * so the cost of deep pages is the same as the first one.
+     *
+     * The current orders are used, the identifier of the model is added as tie-breaker when it's not present.
+     * The fields used for sorting must not be null.
+     *
+     * ```java
+     * KeysetPage<User> page = Hefesto.make(User.class)
+     *     .orderBy("name")
+     *     .seek(20, cursor);
+     * ```
+     *
+     * @param limit  the maximum number of objects to retrieve
+     * @param cursor the cursor returned by the previous page, null for the first page
+     * @return a page with the cursor to load the next one
+     */
+    fun seek(limit: Int, cursor: String?): KeysetPage<Model> {
+        val keysetOrders = keysetOrders()
+        val values = cursor?.let { KeysetCursor.decode(it, keysetOrders, model) }
+        return seek(limit, keysetOrders, values)
+    }
+
+    /**
+     * Retrieves the page that comes after the given row using keyset (seek) pagination.
+     *
+     * @param limit   the maximum number of objects to retrieve
+     * @param lastRow the last row of the previous page
+     * @return a page with the cursor to load the next one
+     * @see seek
+     */
+    fun pageAfter(limit: Int, lastRow: Model): KeysetPage<Model> {
+        val keysetOrders = keysetOrders()
+        return seek(limit, keysetOrders, keysetValuesOf(lastRow, keysetOrders))
+    }
+
+    private fun seek(limit: Int, keysetOrders: List<Order>, values: List<Any?>?): KeysetPage<Model> {
+        val originalWheres = wheres.toList()
+        val originalOrders = orders.toList()
+        val originalLimit = this.limit
+        val originalOffset = this.offset
+
+        try {
+            if (values != null) {
+                if (values.any { it == null }) {
+                    throw QueryException("The fields used for keyset pagination can't be null")
+                }
+                wheres.clear()
+                if (originalWheres.isNotEmpty()) {
+                    wheres.add(CollectionWhere(originalWheres))
+                }
+                wheres.add(CollectionWhere(seekConditions(keysetOrders, values)))
+            }
+            orders.clear()
+            orders.addAll(keysetOrders)
+            this.limit = limit + 1
+            this.offset = null
+
+            val results = get()
+            val hasNext = results.size > limit
+            val data = if (hasNext) results.subList(0, limit) else results
+            val nextCursor = if (hasNext) {
+                KeysetCursor.encode(keysetOrders, keysetValuesOf(data.last(), keysetOrders))
+            } else null
+
+            return KeysetPage(data, nextCursor, hasNext)
+        } finally {
+            wheres.clear()
+            wheres.addAll(originalWheres)
+            orders.clear()
+            orders.addAll(originalOrders)
+            this.limit = originalLimit
+            this.offset = originalOffset
+        }
+    }
+
+    private fun keysetOrders(): List<Order> {
+        val keysetOrders = orders.toMutableList()
+        val idName = keysetIdName()
+        if (keysetOrders.none { it.field == idName }) {
+            keysetOrders.add(Order(idName))
+        }
+        return keysetOrders
+    }
+
+    /**
+     * The name of the identifier of the model, used as tie-breaker of the keyset pagination.
+     *
+     * @return "id" by default
+     */
+    protected open fun keysetIdName(): String = "id"
+
+    /**
+     * Reads the values of the sort fields from a row of the keyset pagination.
+     *
+     * @param row the row
+     * @param keysetOrders the sort definition
+     * @return the values in the same order of the sort definition
+     */
+    protected open fun keysetValuesOf(row: Any, keysetOrders: List<Order>): List<Any?> {
+        return KeysetCursor.valuesOf(row, keysetOrders)
+    }
+
+    /**
+     * Expands the row comparison in OR groups, for (a ASC, b DESC) it creates:
+     * (a > :a) OR (a = :a AND b < :b)
+     */
+    private fun seekConditions(keysetOrders: List<Order>, values: List<Any?>): List<BaseWhere> {
+        return keysetOrders.mapIndexed { index, order ->
+            val conditions = mutableListOf<BaseWhere>()
+            for (previous in 0 until index) {
+                conditions.add(Where(keysetOrders[previous].field, Operator.EQUAL, values[previous]))
+            }
+            val operator = if (order.sort == Sort.ASC) Operator.GREATER else Operator.LESS
+            conditions.add(Where(order.field, operator, values[index]))
+
+            CollectionWhere(conditions, if (index == 0) WhereOperator.AND else WhereOperator.OR)
+        }
+    }
+
+    // ========== END KEYSET PAGINATION ==========
+
+    // ========== ASYNC EXECUTION ==========
+
+    /**
+     * Retrieves a list of Model objects without blocking the current thread.
+     * The query runs in the async executor with its own session.
+     *
+     * ```java
+     * CompletableFuture<List<User>> users = Hefesto.make(User.class).getAsync();
+     * CompletableFuture<Long> pets = Hefesto.make(Pet.class).countResultsAsync();
+     *
+     * CompletableFuture.allOf(users, pets).join();
+     * ```
+     *
+     * @return a future with the list of Model objects
+     */
+    fun getAsync(): CompletableFuture<List<Model>> {
+        return supplyAsync { get() }
+    }
+
+    /**
+     * Retrieves the first model without blocking the current thread.
+     *
+     * @return a future with an Optional containing the first model
+     */
+    fun findFirstAsync(): CompletableFuture<Optional<Model>> {
+        return supplyAsync { findFirst() }
+    }
+
+    /**
+     * Retrieves a page of Model objects without blocking the current thread.
+     *
+     * @param limit the maximum number of objects to retrieve
+     * @return a future with the page
+     */
+    fun pageAsync(limit: Int): CompletableFuture<Page<Model>> {
+        return pageAsync(limit, 0L)
+    }
+
+    /**
+     * Retrieves a page of Model objects without blocking the current thread.
+     *
+     * @param limit  the maximum number of items to be returned
+     * @param offset the starting position of the items to be returned
+     * @return a future with the page
+     */
+    fun pageAsync(limit: Int, offset: Long): CompletableFuture<Page<Model>> {
+        return supplyAsync { page(limit, offset) }
+    }
+
+    /**
+     * Counts the number of results without blocking the current thread.
+     *
+     * @return a future with the number of results
+     */
+    fun countResultsAsync(): CompletableFuture<Long> {
+        return supplyAsync { countResults() }
+    }
+
+    // ========== END ASYNC EXECUTION ==========
+
+    /**
+     * Retrieves the results as a lazy stream, the rows are read from the database while the stream is consumed.
+     * The stream must be closed to release the resources, use it in a try-with-resources block.
+     *
+     * ```java
+     * try (Stream<User> users = Hefesto.make(User.class).stream()) {
+     *     users.forEach(this::export);
+     * }
+     * ```
+     *
+     * @return a stream of Model objects
+     */
+    abstract fun stream(): Stream<Model>
+
     /**
      * Retrieves a list of Model objects with the given selects.
      *
@@ -509,17 +913,32 @@ abstract class BaseBuilder<
      * @param value the value to search for in the "id" field
      * @return an optional containing the first model found, or an empty optional if no model is found
      */
-    fun findFirstById(value: Any?): Optional<Model> {
+    open fun findFirstById(value: Any?): Optional<Model> {
         where("id", value)
         return findFirst()
     }
 
+    /**
+     * Finds the Model objects with the given ids, in the order of the ids.
+     * The ids without a Model are skipped.
+     *
+     * @param ids the values to search for in the "id" field
+     * @return the models found
+     */
+    open fun findAllByIds(ids: Collection<*>): List<Model> {
+        if (ids.isEmpty()) {
+            return emptyList()
+        }
+        where("id", Operator.IN, ids.toList())
+        return get()
+    }
+
     /**
      * Find if exist results for the current query
      *
      * @return true if exists
      */
-    fun exist(): Boolean {
+    open fun exist(): Boolean {
         return countResults() > 0
     }
 
@@ -550,17 +969,141 @@ abstract class BaseBuilder<
 
     companion object {
         /**
-         * This contains the session for make the queries
+         * This contains the provider that resolves the session for make the queries
          */
+        @Volatile
         @JvmStatic
-        private var _session: Any? = null
+        private var _sessionProvider: SessionProvider<*>? = null
 
-        protected val session: Any?
-            get() = _session
+        /**
+         * The provider used to resolve the session on every execution
+         */
+        @JvmStatic
+        val sessionProvider: SessionProvider<*>?
+            get() = _sessionProvider
 
+        /**
+         * Sets a session shared by all the executions.
+         * Prefer [setSessionProvider] when the session changes per thread or transaction.
+         *
+         * @param newSession the session to use, null to remove it
+         */
         @JvmStatic
         fun setSession(newSession: Any?) {
-            _session = newSession
+            _sessionProvider = newSession?.let { StaticSessionProvider(it) }
+        }
+
+        /**
+         * Sets the provider used to resolve the session every time a query is executed.
+         *
+         * @param provider the provider to use, null to remove it
+         */
+        @JvmStatic
+        fun setSessionProvider(provider: SessionProvider<*>?) {
+            _sessionProvider = provider
+        }
+
+        @Volatile
+        @JvmStatic
+        private var _countCache: CountCache? = null
+
+        /**
+         * The cache used by the builders that call [cacheCount]
+         */
+        @JvmStatic
+        val countCache: CountCache?
+            get() = _countCache
+
+        /**
+         * Sets the cache used by the builders that call [cacheCount].
+         *
+         * @param cache the cache to use, null to disable it
+         */
+        @JvmStatic
+        fun setCountCache(cache: CountCache?) {
+            _countCache = cache
+        }
+
+        @Volatile
+        @JvmStatic
+        private var _inListStrategy: InListStrategy? = null
+
+        /**
+         * The strategy used to bind the values of the `whereIn`, null by default so the lists are bound as they are received
+         */
+        @JvmStatic
+        val inListStrategy: InListStrategy?
+            get() = _inListStrategy
+
+        /**
+         * Sets the strategy used to bind the values of the `whereIn`.
+         *
+         * @param strategy the strategy to use, null to bind the values as they are received
+         */
+        @JvmStatic
+        fun setInListStrategy(strategy: InListStrategy?) {
+            _inListStrategy = strategy
+        }
+
+        /**
+         * Provider forced for the executions that run in the current thread (used by the async executions)
+         */
+        private val scopedProvider = ThreadLocal<SessionProvider<*>>()
+
+        @Volatile
+        @JvmStatic
+        private var _asyncSessionProvider: SessionProvider<*>? = null
+
+        @Volatile
+        @JvmStatic
+        private var _asyncExecutor: Executor? = null
+
+        private val defaultAsyncExecutor: Executor by lazy { createDefaultAsyncExecutor() }
+
+        /**
+         * The provider used by the async executions, null to let each implementation decide
+         */
+        @JvmStatic
+        val asyncSessionProvider: SessionProvider<*>?
+            get() = _asyncSessionProvider
+
+        /**
+         * Sets the provider used by the async executions.
+         * Every async execution runs in another thread, so the provider must return a session per call.
+         *
+         * @param provider the provider to use, null to let each implementation decide
+         */
+        @JvmStatic
+        fun setAsyncSessionProvider(provider: SessionProvider<*>?) {
+            _asyncSessionProvider = provider
+        }
+
+        /**
+         * The executor that runs the async executions.
+         * By default uses virtual threads when the JVM supports them, otherwise a cached pool of daemon threads.
+         */
+        @JvmStatic
+        val asyncExecutor: Executor
+            get() = _asyncExecutor ?: defaultAsyncExecutor
+
+        /**
+         * Sets the executor that runs the async executions.
+         *
+         * @param executor the executor to use, null to go back to the default one
+         */
+        @JvmStatic
+        fun setAsyncExecutor(executor: Executor?) {
+            _asyncExecutor = executor
+        }
+
+        private fun createDefaultAsyncExecutor(): Executor {
+            return try {
+                Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor").invoke(null) as Executor
+            } catch (e: ReflectiveOperationException) {
+                Executors.newCachedThreadPool { runnable ->
+                    Thread(runnable, "hefesto-async").apply { isDaemon = true }
+                }
+            }
         }
     }
 }
@@ -1,13 +1,94 @@
 package io.github.robertomike.hefesto.constructors
 
 import io.github.robertomike.hefesto.actions.wheres.BaseWhere
+import io.github.robertomike.hefesto.actions.wheres.Where
+import io.github.robertomike.hefesto.actions.wheres.WhereStaged
+import io.github.robertomike.hefesto.builders.BaseBuilder
+import io.github.robertomike.hefesto.utils.InListPlan
 
 /**
  * Abstract base class for constructing WHERE clause components.
  * Collects and manages WHERE conditions that will be transformed into predicates.
- * 
+ *
  * Implementations of this class are responsible for converting the collected
  * WHERE conditions into the appropriate format for their query builder
  * (Criteria API or HQL).
  */
-abstract class ConstructWhere : Construct<BaseWhere>()
+abstract class ConstructWhere : Construct<BaseWhere>() {
+    private val plans = LinkedHashMap<Where, InListPlan>()
+
+    /**
+     * True when the database of the execution can bind the values of a `whereInArray` as one array,
+     * the builders set it before every execution.
+     */
+    @Volatile
+    var arrayParameters: Boolean = false
+
+    /**
+     * The slots of the temporary tables with the values of the `whereInStaged` staged by the current execution,
+     * the builders set it before every execution and clear it after, the wheres without a slot are a standard IN.
+     */
+    @Volatile
+    var stagedSlots: Map<WhereStaged, Int> = emptyMap()
+
+    /**
+     * The plans of the IN lists of the last construction, one for every `whereIn` with a list of values.
+     */
+    val inListPlans: List<InListPlan>
+        get() = synchronized(plans) { plans.values.toList() }
+
+    /**
+     * Removes the plans of the previous construction, the implementations call it when a construction starts.
+     */
+    protected fun clearPlans() {
+        synchronized(plans) {
+            plans.clear()
+        }
+    }
+
+    /**
+     * Plans the IN list of the where with the [InListStrategy][io.github.robertomike.hefesto.utils.InListStrategy]
+     * of [BaseBuilder.inListStrategy] and keeps the plan in [inListPlans].
+     *
+     * @param where the IN or NOT IN where
+     * @param values the values of the where
+     * @return the plan with the values of every IN list
+     */
+    protected fun planInList(where: Where, values: Collection<*>): InListPlan {
+        val plan = BaseBuilder.inListStrategy?.plan(where.field, values) ?: InListPlan.plain(where.field, values)
+
+        synchronized(plans) {
+            plans[where] = plan
+        }
+        return plan
+    }
+
+    /**
+     * Keeps the plan of a `whereInArray` bound as one array in [inListPlans].
+     *
+     * @param where the where
+     * @param values the values of the where
+     * @return the plan
+     */
+    protected fun planArray(where: Where, values: Collection<*>): InListPlan {
+        return keepPlan(where, InListPlan(where.field, values.size, InListPlan.Type.ARRAY, listOf(values.toList())))
+    }
+
+    /**
+     * Keeps the plan of a `whereInStaged` read from the temporary table in [inListPlans].
+     *
+     * @param where the where
+     * @param values the values of the where
+     * @return the plan
+     */
+    protected fun planStaged(where: Where, values: Collection<*>): InListPlan {
+        return keepPlan(where, InListPlan(where.field, values.size, InListPlan.Type.STAGED, emptyList()))
+    }
+
+    private fun keepPlan(where: Where, plan: InListPlan): InListPlan {
+        synchronized(plans) {
+            plans[where] = plan
+        }
+        return plan
+    }
+}
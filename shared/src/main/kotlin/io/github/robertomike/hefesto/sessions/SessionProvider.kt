@@ -0,0 +1,27 @@
+package io.github.robertomike.hefesto.sessions
+
+/**
+ * Resolves the session used by the builders every time a query is executed.
+ *
+ * Instead of holding a single session for the whole application, the builders ask the
+ * provider for a session right before running a query and hand it back once the query
+ * finished, so every execution can be bound to the current thread, transaction or unit of work.
+ *
+ * @param <SESSION> the type of session returned
+ */
+interface SessionProvider<SESSION> {
+    /**
+     * Returns the session that must be used for the current execution.
+     *
+     * @return the session, or null if no session is available
+     */
+    fun getSession(): SESSION?
+
+    /**
+     * Called once the execution that requested the session has finished.
+     * Implementations that open a session per call should close it here.
+     *
+     * @param session the session returned by [getSession]
+     */
+    fun releaseSession(session: SESSION)
+}
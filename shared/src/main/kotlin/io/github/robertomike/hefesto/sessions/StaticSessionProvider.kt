@@ -0,0 +1,15 @@
+package io.github.robertomike.hefesto.sessions
+
+/**
+ * Provider that always returns the same session.
+ * This is the provider used when the session is set with [io.github.robertomike.hefesto.builders.BaseBuilder.setSession].
+ *
+ * @param session the session shared by all the executions
+ */
+class StaticSessionProvider<SESSION>(private val session: SESSION) : SessionProvider<SESSION> {
+    override fun getSession(): SESSION = session
+
+    override fun releaseSession(session: SESSION) {
+        // The session is shared, it is never released by the builders
+    }
+}
@@ -4,11 +4,14 @@ import io.github.robertomike.hefesto.actions.wheres.BaseWhere
 import io.github.robertomike.hefesto.actions.wheres.CollectionWhere
 import io.github.robertomike.hefesto.actions.wheres.Where
 import io.github.robertomike.hefesto.actions.wheres.WhereExist
+import io.github.robertomike.hefesto.actions.wheres.WhereInArray
+import io.github.robertomike.hefesto.actions.wheres.WhereStaged
 import io.github.robertomike.hefesto.builders.BaseBuilder
 import io.github.robertomike.hefesto.constructors.ConstructWhere
 import io.github.robertomike.hefesto.enums.Operator
 import io.github.robertomike.hefesto.enums.WhereOperator
 import jakarta.persistence.metamodel.SingularAttribute
+import java.util.UUID
 import kotlin.reflect.KProperty1
 
 /**
@@ -307,7 +310,7 @@ interface ConditionalBuilder<R : ConditionalBuilder<R>> {
      * @return the modified query object
      */
     fun <T> whereIn(field: String, values: Iterable<T>): R {
-        if (values.toList().isEmpty()) {
+        if (!values.iterator().hasNext()) {
             return this as R
         }
 
@@ -315,6 +318,40 @@ interface ConditionalBuilder<R : ConditionalBuilder<R>> {
         return this as R
     }
 
+    /**
+     * Adds a WHERE IN clause to the query without boxing the array, the values are bound from a view of the array
+     * and they are boxed only when bound.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to match against
+     * @return the modified query object
+     */
+    fun whereIn(field: String, values: LongArray): R {
+        if (values.isEmpty()) {
+            return this as R
+        }
+
+        wheres.add(Where(field, Operator.IN, values.asList()))
+        return this as R
+    }
+
+    /**
+     * Adds a WHERE IN clause to the query without boxing the array, the values are bound from a view of the array
+     * and they are boxed only when bound.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to match against
+     * @return the modified query object
+     */
+    fun whereIn(field: String, values: IntArray): R {
+        if (values.isEmpty()) {
+            return this as R
+        }
+
+        wheres.add(Where(field, Operator.IN, values.asList()))
+        return this as R
+    }
+
     /**
      * Adds a WHERE IN clause with a subQuery as value to the query.
      *
@@ -359,7 +396,7 @@ interface ConditionalBuilder<R : ConditionalBuilder<R>> {
      * @return the modified query object
      */
     fun <T> orWhereIn(field: String, values: Iterable<T>): R {
-        if (values.toList().isEmpty()) {
+        if (!values.iterator().hasNext()) {
             return this as R
         }
 
@@ -411,7 +448,7 @@ interface ConditionalBuilder<R : ConditionalBuilder<R>> {
      * @return the modified query object
      */
     fun <T> whereNotIn(field: String, values: Iterable<T>): R {
-        if (values.toList().isEmpty()) {
+        if (!values.iterator().hasNext()) {
             return this as R
         }
 
@@ -419,6 +456,102 @@ interface ConditionalBuilder<R : ConditionalBuilder<R>> {
         return this as R
     }
 
+    /**
+     * Adds a WHERE NOT IN condition to the query without boxing the array, the values are bound from a view of the array
+     * and they are boxed only when bound.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to check against
+     * @return the modified query object
+     */
+    fun whereNotIn(field: String, values: LongArray): R {
+        if (values.isEmpty()) {
+            return this as R
+        }
+
+        wheres.add(Where(field, Operator.NOT_IN, values.asList()))
+        return this as R
+    }
+
+    /**
+     * Adds a WHERE NOT IN condition to the query without boxing the array, the values are bound from a view of the array
+     * and they are boxed only when bound.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to check against
+     * @return the modified query object
+     */
+    fun whereNotIn(field: String, values: IntArray): R {
+        if (values.isEmpty()) {
+            return this as R
+        }
+
+        wheres.add(Where(field, Operator.NOT_IN, values.asList()))
+        return this as R
+    }
+
+    /**
+     * Adds a WHERE IN clause bound as one array parameter (`field = any(?)`) on PostgreSQL and H2,
+     * the statement is the same for any number of values so it's parsed and planned once.
+     * The other databases throw a QueryException when the query is executed.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to match against
+     * @return the modified query object
+     */
+    fun whereInArray(field: String, values: LongArray): R {
+        return whereInArray(field, values.asList())
+    }
+
+    /**
+     * Adds a WHERE IN clause bound as one array parameter (`field = any(?)`) on PostgreSQL and H2,
+     * the other databases throw a QueryException when the query is executed.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to match against
+     * @return the modified query object
+     */
+    fun whereInArray(field: String, values: Array<UUID>): R {
+        return whereInArray(field, values.asList())
+    }
+
+    /**
+     * Adds a WHERE IN clause bound as one array parameter (`field = any(?)`) on PostgreSQL and H2,
+     * the other databases throw a QueryException when the query is executed.
+     * Only the lists of numbers and UUIDs are bound as an array, the others are a standard IN.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to match against
+     * @return the modified query object
+     */
+    fun whereInArray(field: String, values: Collection<*>): R {
+        if (values.isEmpty()) {
+            return this as R
+        }
+
+        wheres.add(WhereInArray(field, values as? List<*> ?: values.toList()))
+        return this as R
+    }
+
+    /**
+     * Adds a WHERE IN clause for very big lists of values, like hundreds of thousands of ids read from a file.
+     * The values are inserted with JDBC batches in a temporary table before the execution,
+     * the condition is a sub-query on that table and the table is dropped after the execution.
+     *
+     * @param field  the field to apply the WHERE clause on
+     * @param values the values to match against, numbers or strings
+     * @return the modified query object
+     */
+    fun whereInStaged(field: String, values: Iterable<*>): R {
+        val list = values.toList()
+        if (list.isEmpty()) {
+            return this as R
+        }
+
+        wheres.add(WhereStaged(field, list))
+        return this as R
+    }
+
     // ========== TYPE-SAFE WHERE IN/NOT IN SUPPORT ==========
 
     /**
@@ -0,0 +1,252 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.GroupBy
+import io.github.robertomike.hefesto.actions.Join
+import io.github.robertomike.hefesto.actions.wheres.BaseWhere
+import io.github.robertomike.hefesto.actions.wheres.CollectionWhere
+import io.github.robertomike.hefesto.actions.wheres.Where
+import io.github.robertomike.hefesto.actions.wheres.WhereField
+import io.github.robertomike.hefesto.actions.wheres.WhereInArray
+import io.github.robertomike.hefesto.actions.wheres.WhereStaged
+import io.github.robertomike.hefesto.builders.BaseBuilder
+import java.time.Duration
+import java.util.Collections
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+
+/**
+ * Cache for the totals of the count queries, used by the builders that enable it with `cacheCount()`.
+ *
+ * The entries are keyed by the structure of the wheres, joins and group by plus the bound values,
+ * they expire after the TTL of the entity and the least recently used entry is removed when the cache is full.
+ * When several threads need the same missing total the count is executed only once.
+ *
+ * ```java
+ * CountCache cache = new CountCache(1000, Duration.ofSeconds(30));
+ * cache.ttl(User.class, Duration.ofMinutes(5));
+ * Hefesto.setCountCache(cache);
+ *
+ * Page<User> page = Hefesto.make(User.class)
+ *     .where("status", Status.ACTIVE)
+ *     .cacheCount()
+ *     .page(20, 40);
+ *
+ * // After writing users
+ * cache.invalidate(User.class);
+ * ```
+ *
+ * @param maxSize the maximum number of totals stored
+ * @param defaultTtl the time a total is valid, unless a TTL was set for the entity
+ */
+class CountCache @JvmOverloads constructor(
+    private val maxSize: Int = 1000,
+    private val defaultTtl: Duration = Duration.ofSeconds(60)
+) {
+    private val entries = object : LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Entry>?): Boolean = size > maxSize
+    }
+
+    private val ttls = mutableMapOf<Class<*>, Duration>()
+
+    /**
+     * The totals being counted, the threads that need the same total wait for them
+     */
+    private val loading = HashMap<Key, CompletableFuture<Long>>()
+
+    /**
+     * Sets the time the totals of an entity are valid.
+     *
+     * @param model the entity
+     * @param ttl the time the totals are valid
+     * @return the same cache
+     */
+    fun ttl(model: Class<*>, ttl: Duration): CountCache {
+        synchronized(entries) {
+            ttls[model] = ttl
+        }
+        return this
+    }
+
+    /**
+     * Returns the cached total or executes the count and stores it.
+     * The entry is checked and the load is registered under the lock of the cache, so a missing total
+     * is counted by one thread and the others wait for it. The count runs outside the lock.
+     * When the entity is invalidated while it's counted the total is returned but not stored.
+     *
+     * @param key the key created with [keyOf]
+     * @param count the count query
+     * @return the total
+     */
+    fun get(key: Key, count: () -> Long): Long {
+        val future = CompletableFuture<Long>()
+        val current = synchronized(entries) {
+            val entry = entries[key]
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                return entry.total
+            }
+            loading.putIfAbsent(key, future)
+        }
+
+        if (current != null) {
+            return try {
+                current.join()
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+        }
+
+        try {
+            val total = count()
+            synchronized(entries) {
+                if (loading[key] === future) {
+                    loading.remove(key)
+                    entries[key] = Entry(total, System.nanoTime() + (ttls[key.model] ?: defaultTtl).toNanos())
+                }
+            }
+            future.complete(total)
+            return total
+        } catch (e: Throwable) {
+            synchronized(entries) {
+                loading.remove(key, future)
+            }
+            future.completeExceptionally(e)
+            throw e
+        }
+    }
+
+    /**
+     * Removes the totals of an entity, call it after writing the entity.
+     *
+     * @param model the entity
+     */
+    fun invalidate(model: Class<*>) {
+        synchronized(entries) {
+            entries.keys.removeIf { it.model == model }
+            loading.keys.removeIf { it.model == model }
+        }
+    }
+
+    /**
+     * Removes all the totals.
+     */
+    fun invalidateAll() {
+        synchronized(entries) {
+            entries.clear()
+            loading.clear()
+        }
+    }
+
+    /**
+     * The number of totals stored, including the expired ones not removed yet.
+     */
+    val size: Int
+        get() = synchronized(entries) { entries.size }
+
+    /**
+     * The key of a count query.
+     *
+     * @property model the queried entity
+     * @property structure the text that describes the wheres, joins and group by
+     * @property values the values bound to the query
+     */
+    data class Key(
+        val model: Class<*>,
+        val structure: String,
+        val values: List<Any?>
+    )
+
+    private class Entry(val total: Long, val expiresAt: Long)
+
+    companion object {
+        /**
+         * The lists with more values are not cached, hashing and comparing them would cost more than the count.
+         */
+        const val MAX_KEY_VALUES = 1000
+
+        /**
+         * Creates the key of a count query.
+         *
+         * The queries with `whereInArray`, `whereInStaged` or a list of more than [MAX_KEY_VALUES] values are not cached,
+         * those wheres are meant for big lists and the key would hold all the values.
+         *
+         * @return the key, null when the query has conditions that can't be described (sub-queries, exists and custom conditions)
+         * or big lists of values
+         */
+        @JvmStatic
+        fun keyOf(model: Class<*>, wheres: List<BaseWhere>, joins: List<Join>, groupBy: List<GroupBy>): Key? {
+            val structure = StringBuilder()
+            val values = mutableListOf<Any?>()
+
+            if (!describeWheres(wheres, structure, values)) {
+                return null
+            }
+            joins.forEach {
+                if (!describeJoin(it, structure, values)) {
+                    return null
+                }
+            }
+            groupBy.forEach { structure.append("group ").append(it.field).append(';') }
+
+            return Key(model, structure.toString(), Collections.unmodifiableList(values))
+        }
+
+        /**
+         * Copies the lists and arrays of values, so the key doesn't change when the caller changes them later.
+         */
+        private fun copyOf(value: Any?): Any? {
+            return when (value) {
+                is Array<*> -> Collections.unmodifiableList(value.toList())
+                is Collection<*> -> Collections.unmodifiableList(value.toList())
+                else -> value
+            }
+        }
+
+        private fun describeWheres(wheres: List<BaseWhere>, structure: StringBuilder, values: MutableList<Any?>): Boolean {
+            for (where in wheres) {
+                structure.append(where.whereOperation.name).append(' ')
+                when (where) {
+                    is CollectionWhere -> {
+                        structure.append('(')
+                        if (!describeWheres(where.wheres, structure, values)) {
+                            return false
+                        }
+                        structure.append(')')
+                    }
+                    is WhereField -> structure.append(where.field).append(' ')
+                        .append(where.operator.name).append(' ').append(where.secondField)
+                    is Where -> {
+                        val value = where.value
+                        if (value is BaseBuilder<*, *, *, *, *, *, *, *> || where is WhereInArray || where is WhereStaged) {
+                            return false
+                        }
+                        if ((value is Collection<*> && value.size > MAX_KEY_VALUES) || (value is Array<*> && value.size > MAX_KEY_VALUES)) {
+                            return false
+                        }
+                        structure.append(where.javaClass.simpleName).append(' ').append(where.field)
+                            .append(' ').append(where.operator.name).append(" ?")
+                        values.add(copyOf(value))
+                    }
+                    else -> return false
+                }
+                structure.append(';')
+            }
+            return true
+        }
+
+        private fun describeJoin(join: Join, structure: StringBuilder, values: MutableList<Any?>): Boolean {
+            structure.append("join ").append(join.joinOperator.name).append(' ').append(join.table)
+                .append(' ').append(join.alias).append(' ').append(join.fieldJoin).append(' ').append(join.fieldReference)
+                .append('[')
+            if (!describeWheres(join.conditions, structure, values)) {
+                return false
+            }
+            join.deepJoins.forEach {
+                if (!describeJoin(it, structure, values)) {
+                    return false
+                }
+            }
+            structure.append("];")
+            return true
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.exceptions.QueryException
+
+/**
+ * How the values of a `whereIn` or `whereNotIn` are bound, shared by the criteria and HQL implementations.
+ *
+ * - The lists are padded to the next power of two repeating the last value, so the lists of 5 to 8 values
+ *   generate the same SQL and the database reuses the plan
+ * - The lists bigger than [chunkSize] are split in chunks joined with `or` (`and` for `not in`),
+ *   so the limits of the drivers for one IN list (1000 in Oracle) are never reached
+ *
+ * ```java
+ * Hefesto.setInListStrategy(new InListStrategy(true, 500));
+ *
+ * var users = Hefesto.make(User.class).whereIn("id", ids);
+ * users.get();
+ * users.getInListPlans(); // [id: 1200 values in 3 chunks of 500]
+ * ```
+ *
+ * The values are never copied, the chunks and the padded lists are views of the list of the where,
+ * so the `long[]` and `int[]` of `whereIn` are boxed only when they are bound.
+ *
+ * The total of parameters of the statement is not reduced by the chunks,
+ * use `findAllByIds` to load big lists of ids in batches of statements.
+ *
+ * @param padding pads the lists to the next power of two
+ * @param chunkSize the maximum values of one IN list, the padding never goes over it
+ */
+class InListStrategy @JvmOverloads constructor(
+    val padding: Boolean = true,
+    val chunkSize: Int = 1000
+) {
+    init {
+        if (chunkSize < 1) {
+            throw QueryException("The chunk size of the IN lists must be greater than 0")
+        }
+    }
+
+    /**
+     * Chooses how the values of the field are bound.
+     *
+     * @param field the field of the where
+     * @param values the values of the where
+     * @return the plan with the values of every IN list
+     */
+    fun plan(field: String, values: Collection<*>): InListPlan {
+        val list = values as? List<*> ?: values.toList()
+
+        if (list.size > chunkSize) {
+            val chunks = (list.indices step chunkSize).map { pad(list.subList(it, minOf(it + chunkSize, list.size))) }
+            return InListPlan(field, list.size, InListPlan.Type.CHUNKED, chunks)
+        }
+
+        val padded = pad(list)
+        val type = if (padded.size == list.size) InListPlan.Type.PLAIN else InListPlan.Type.PADDED
+
+        return InListPlan(field, list.size, type, listOf(padded))
+    }
+
+    private fun pad(values: List<Any?>): List<Any?> {
+        if (!padding || values.size < 2) {
+            return values
+        }
+
+        val size = minOf(Integer.highestOneBit(values.size - 1) shl 1, chunkSize)
+        if (size <= values.size) {
+            return values
+        }
+
+        return PaddedList(values, size)
+    }
+
+    /**
+     * View of the values repeating the last one up to the size, the values are never copied.
+     */
+    private class PaddedList(private val values: List<Any?>, override val size: Int) : AbstractList<Any?>(), RandomAccess {
+        override fun get(index: Int): Any? {
+            if (index !in 0 until size) {
+                throw IndexOutOfBoundsException("Index $index, size $size")
+            }
+            return values[minOf(index, values.size - 1)]
+        }
+    }
+}
+
+/**
+ * The way the values of one `whereIn` were bound, see [InListStrategy].
+ *
+ * @property field the field of the where
+ * @property size the number of values received
+ * @property type the strategy used
+ * @property chunks the values bound in every IN list, padded when the padding is enabled
+ */
+data class InListPlan(
+    val field: String,
+    val size: Int,
+    val type: Type,
+    val chunks: List<List<Any?>>
+) {
+    enum class Type {
+        /** One IN list with the values received */
+        PLAIN,
+
+        /** One IN list padded to the next power of two */
+        PADDED,
+
+        /** Several IN lists joined with or */
+        CHUNKED,
+
+        /** One array parameter, used by `whereInArray` */
+        ARRAY,
+
+        /** The values in a temporary table, used by `whereInStaged` */
+        STAGED
+    }
+
+    override fun toString(): String {
+        return when (type) {
+            Type.PLAIN -> "$field: $size values"
+            Type.PADDED -> "$field: $size values padded to ${chunks[0].size}"
+            Type.CHUNKED -> "$field: $size values in ${chunks.size} chunks of ${chunks[0].size}"
+            Type.ARRAY -> "$field: $size values in one array"
+            Type.STAGED -> "$field: $size values in a temporary table"
+        }
+    }
+
+    companion object {
+        /**
+         * The plan used when there is no [InListStrategy], one IN list with the values received.
+         */
+        @JvmStatic
+        fun plain(field: String, values: Collection<*>): InListPlan {
+            return InListPlan(field, values.size, Type.PLAIN, listOf(values as? List<*> ?: values.toList()))
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.robertomike.hefesto.utils
+
+import io.github.robertomike.hefesto.actions.Order
+import io.github.robertomike.hefesto.exceptions.QueryException
+import java.lang.reflect.Field
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.sql.Timestamp
+import java.time.*
+import java.time.format.DateTimeParseException
+import java.util.*
+
+/**
+ * Encodes and decodes the opaque cursors used by the keyset pagination.
+ *
+ * The cursor contains the sort definition and the values of the sort fields of the last row,
+ * all of them as text. When decoded, every value is converted to the type of the field in the model,
+ * so the cursor never decides which classes are instantiated.
+ * The timestamps are kept as instants with the nanoseconds, the other dates as milliseconds.
+ */
+object KeysetCursor {
+    private val encoder = Base64.getUrlEncoder().withoutPadding()
+    private val decoder = Base64.getUrlDecoder()
+    private const val NULL = "-"
+
+    /**
+     * Reads the values of the sort fields from a row.
+     *
+     * @param row the last row of the page
+     * @param orders the sort definition
+     * @return the values in the same order of the sort definition
+     */
+    @JvmStatic
+    fun valuesOf(row: Any, orders: List<Order>): List<Any?> {
+        return orders.map { order ->
+            var current: Any? = row
+            for (name in order.field.split(".")) {
+                if (current == null) {
+                    break
+                }
+                val field = findField(current.javaClass, name)
+                field.isAccessible = true
+                current = field.get(current)
+            }
+            current
+        }
+    }
+
+    /**
+     * Creates the cursor for the given values.
+     *
+     * @param orders the sort definition
+     * @param values the values of the sort fields
+     * @return the opaque cursor
+     */
+    @JvmStatic
+    fun encode(orders: List<Order>, values: List<Any?>): String {
+        val parts = listOf<String?>(signature(orders)) + values.map { value ->
+            when (value) {
+                null -> null
+                is Timestamp -> value.toInstant().toString()
+                is Date -> value.time.toString()
+                is Enum<*> -> value.name
+                else -> value.toString()
+            }
+        }
+        val content = parts.joinToString("") { if (it == null) NULL else "${it.length}:$it" }
+        return encoder.encodeToString(content.toByteArray(Charsets.UTF_8))
+    }
+
+    /**
+     * Decodes the cursor and converts the values to the types of the fields in the model.
+     *
+     * @param cursor the cursor created by [encode]
+     * @param orders the current sort definition, must be the same used to create the cursor
+     * @param model the class of the rows
+     * @return the values of the sort fields
+     */
+    @JvmStatic
+    fun decode(cursor: String, orders: List<Order>, model: Class<*>): List<Any?> {
+        val parts = try {
+            split(String(decoder.decode(cursor), Charsets.UTF_8))
+        } catch (e: IllegalArgumentException) {
+            throw QueryException("Invalid cursor")
+        }
+
+        if (parts.size != orders.size + 1 || parts[0] != signature(orders)) {
+            throw QueryException("The cursor doesn't match the current order")
+        }
+
+        return orders.mapIndexed { index, order ->
+            parts[index + 1]?.let { convert(typeOf(model, order.field), it) }
+        }
+    }
+
+    private fun signature(orders: List<Order>): String {
+        return orders.joinToString(",") { "${it.field} ${it.sort.name}" }
+    }
+
+    private fun split(content: String): List<String?> {
+        val parts = mutableListOf<String?>()
+        var index = 0
+        while (index < content.length) {
+            if (content[index] == NULL[0]) {
+                parts.add(null)
+                index++
+                continue
+            }
+            val separator = content.indexOf(':', index)
+            if (separator == -1) {
+                throw IllegalArgumentException("Invalid cursor")
+            }
+            val length = content.substring(index, separator).toInt()
+            val end = separator + 1 + length
+            if (end > content.length) {
+                throw IllegalArgumentException("Invalid cursor")
+            }
+            parts.add(content.substring(separator + 1, end))
+            index = end
+        }
+        return parts
+    }
+
+    private fun typeOf(model: Class<*>, path: String): Class<*> {
+        var type = model
+        for (name in path.split(".")) {
+            type = findField(type, name).type
+        }
+        return type
+    }
+
+    private fun findField(clazz: Class<*>, name: String): Field {
+        var current: Class<*>? = clazz
+        while (current != null) {
+            try {
+                return current.getDeclaredField(name)
+            } catch (e: NoSuchFieldException) {
+                current = current.superclass
+            }
+        }
+        throw QueryException("The field '$name' doesn't exist in ${clazz.name}, it can't be used for keyset pagination")
+    }
+
+    /**
+     * The fields declared as [Date] can hold a [Timestamp], it's encoded as an instant and decoded as a [Timestamp] again.
+     */
+    private fun convertDate(type: Class<*>, value: String): Date {
+        value.toLongOrNull()?.let { return type.getConstructor(Long::class.javaPrimitiveType).newInstance(it) as Date }
+
+        if (!type.isAssignableFrom(Timestamp::class.java)) {
+            throw QueryException("Invalid cursor")
+        }
+        return try {
+            Timestamp.from(Instant.parse(value))
+        } catch (e: DateTimeParseException) {
+            throw QueryException("Invalid cursor")
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun convert(type: Class<*>, value: String): Any {
+        return when {
+            type.isEnum -> java.lang.Enum.valueOf(type as Class<out Enum<*>>, value)
+            type == UUID::class.java -> UUID.fromString(value)
+            type == LocalDate::class.java -> LocalDate.parse(value)
+            type == LocalDateTime::class.java -> LocalDateTime.parse(value)
+            type == LocalTime::class.java -> LocalTime.parse(value)
+            type == Instant::class.java -> Instant.parse(value)
+            type == OffsetDateTime::class.java -> OffsetDateTime.parse(value)
+            type == ZonedDateTime::class.java -> ZonedDateTime.parse(value)
+            Date::class.java.isAssignableFrom(type) -> convertDate(type, value)
+            type == Float::class.javaPrimitiveType || type == java.lang.Float::class.java -> value.toFloat()
+            type == BigDecimal::class.java -> BigDecimal(value)
+            type == BigInteger::class.java -> BigInteger(value)
+            else -> CastUtils.castValue(type, value)
+        }
+    }
+}
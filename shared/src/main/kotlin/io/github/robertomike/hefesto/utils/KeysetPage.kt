@@ -0,0 +1,26 @@
+package io.github.robertomike.hefesto.utils
+
+/**
+ * Represents a page loaded with keyset (seek) pagination.
+ *
+ * Example usage:
+ * ```java
+ * KeysetPage<User> first = Hefesto.make(User.class)
+ *     .orderBy("createdAt", Sort.DESC)
+ *     .seek(20);
+ *
+ * KeysetPage<User> second = Hefesto.make(User.class)
+ *     .orderBy("createdAt", Sort.DESC)
+ *     .seek(20, first.getNextCursor());
+ * ```
+ *
+ * @param T the type of entities in the page
+ * @property data the list of entities for this page
+ * @property nextCursor the opaque cursor to load the next page, null when there are no more results
+ * @property hasNext true if there are more results after this page
+ */
+data class KeysetPage<T>(
+    val data: List<T>,
+    val nextCursor: String?,
+    val hasNext: Boolean
+)
@@ -0,0 +1,26 @@
+package io.github.robertomike.hefesto.utils
+
+/**
+ * Represents a slice of a result set, like a [Page] but without the total number of records.
+ * Useful for infinite scroll where only knowing if there are more results is needed.
+ *
+ * Example usage:
+ * ```java
+ * Slice<User> slice = Hefesto.make(User.class)
+ *     .orderBy("name")
+ *     .slice(20, 40);
+ *
+ * List<User> users = slice.getData();
+ * boolean more = slice.getHasNext();
+ * ```
+ *
+ * @param T the type of entities in the slice
+ * @property data the list of entities for this slice
+ * @property offset the offset used to load the slice
+ * @property hasNext true if there are more results after this slice
+ */
+data class Slice<T>(
+    val data: List<T>,
+    val offset: Long,
+    val hasNext: Boolean
+)
@@ -0,0 +1,127 @@
+package utils;
+
+import io.github.robertomike.hefesto.actions.wheres.BaseWhere;
+import io.github.robertomike.hefesto.actions.wheres.Where;
+import io.github.robertomike.hefesto.actions.wheres.WhereInArray;
+import io.github.robertomike.hefesto.actions.wheres.WhereStaged;
+import io.github.robertomike.hefesto.enums.Operator;
+import io.github.robertomike.hefesto.utils.CountCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountCacheTest {
+    private CountCache.Key keyFor(Object value) {
+        return CountCache.keyOf(String.class, List.<BaseWhere>of(new Where("name", value)), List.of(), List.of());
+    }
+
+    @Test
+    void sameQueryUsesSameKey() {
+        assertEquals(keyFor("test"), keyFor("test"));
+        assertNotEquals(keyFor("test"), keyFor("other"));
+    }
+
+    @Test
+    void cachedTotalIsReused() {
+        var cache = new CountCache(10, Duration.ofMinutes(1));
+
+        assertEquals(1L, cache.get(keyFor("test"), () -> 1L));
+        assertEquals(1L, cache.get(keyFor("test"), () -> 2L));
+    }
+
+    @Test
+    void expiredTotalIsLoadedAgain() {
+        var cache = new CountCache(10, Duration.ofMinutes(1)).ttl(String.class, Duration.ZERO);
+
+        assertEquals(1L, cache.get(keyFor("test"), () -> 1L));
+        assertEquals(2L, cache.get(keyFor("test"), () -> 2L));
+    }
+
+    @Test
+    void leastRecentlyUsedIsRemoved() {
+        var cache = new CountCache(2, Duration.ofMinutes(1));
+
+        cache.get(keyFor("a"), () -> 1L);
+        cache.get(keyFor("b"), () -> 2L);
+        cache.get(keyFor("a"), () -> 1L);
+        cache.get(keyFor("c"), () -> 3L);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1L, cache.get(keyFor("a"), () -> 10L));
+        assertEquals(20L, cache.get(keyFor("b"), () -> 20L));
+    }
+
+    @Test
+    void invalidateRemovesEntityTotals() {
+        var cache = new CountCache();
+
+        cache.get(keyFor("test"), () -> 1L);
+        cache.invalidate(String.class);
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    void keyCopiesTheValues() {
+        var ids = new ArrayList<>(List.of(1L, 2L));
+        var key = CountCache.keyOf(String.class, List.<BaseWhere>of(new Where("id", Operator.IN, ids)), List.of(), List.of());
+        var expected = CountCache.keyOf(String.class, List.<BaseWhere>of(new Where("id", Operator.IN, List.of(1L, 2L))), List.of(), List.of());
+
+        ids.add(3L);
+
+        assertEquals(expected, key);
+        assertThrows(UnsupportedOperationException.class, () -> key.getValues().add(4L));
+    }
+
+    @Test
+    void concurrentMissesCountOnce() throws Exception {
+        var cache = new CountCache();
+        var counts = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var first = CompletableFuture.supplyAsync(() -> cache.get(keyFor("test"), () -> {
+            counts.incrementAndGet();
+            started.countDown();
+            await(release);
+            return 5L;
+        }));
+        started.await();
+        var second = CompletableFuture.supplyAsync(() -> cache.get(keyFor("test"), () -> {
+            counts.incrementAndGet();
+            return 6L;
+        }));
+        release.countDown();
+
+        assertEquals(5L, first.get(5, TimeUnit.SECONDS));
+        assertEquals(5L, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, counts.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void bigListsAreNotCached() {
+        var big = Collections.nCopies(CountCache.MAX_KEY_VALUES + 1, 1L);
+
+        assertNotNull(CountCache.keyOf(String.class, List.<BaseWhere>of(new Where("id", Operator.IN, List.of(1L, 2L))), List.of(), List.of()));
+        assertNull(CountCache.keyOf(String.class, List.<BaseWhere>of(new Where("id", Operator.IN, big)), List.of(), List.of()));
+        assertNull(CountCache.keyOf(String.class, List.<BaseWhere>of(new WhereInArray("id", List.of(1L))), List.of(), List.of()));
+        assertNull(CountCache.keyOf(String.class, List.<BaseWhere>of(new WhereStaged("id", List.of(1L))), List.of(), List.of()));
+    }
+}
@@ -0,0 +1,76 @@
+package utils;
+
+import io.github.robertomike.hefesto.exceptions.QueryException;
+import io.github.robertomike.hefesto.utils.InListPlan;
+import io.github.robertomike.hefesto.utils.InListStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InListStrategyTest {
+    private List<Long> values(int size) {
+        return LongStream.rangeClosed(1, size).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    void listIsPaddedToNextPowerOfTwo() {
+        var plan = new InListStrategy().plan("id", values(5));
+
+        assertEquals(InListPlan.Type.PADDED, plan.getType());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L), plan.getChunks().get(0));
+    }
+
+    @Test
+    void powerOfTwoIsNotPadded() {
+        var plan = new InListStrategy().plan("id", values(4));
+
+        assertEquals(InListPlan.Type.PLAIN, plan.getType());
+        assertEquals(values(4), plan.getChunks().get(0));
+    }
+
+    @Test
+    void paddingCanBeDisabled() {
+        var plan = new InListStrategy(false, 1000).plan("id", values(5));
+
+        assertEquals(InListPlan.Type.PLAIN, plan.getType());
+        assertEquals(5, plan.getChunks().get(0).size());
+    }
+
+    @Test
+    void bigListIsSplitInChunks() {
+        var plan = new InListStrategy(true, 4).plan("id", values(9));
+
+        assertEquals(InListPlan.Type.CHUNKED, plan.getType());
+        assertEquals(3, plan.getChunks().size());
+        assertEquals(values(4), plan.getChunks().get(0));
+        assertEquals(List.of(9L), plan.getChunks().get(2));
+        assertEquals("id: 9 values in 3 chunks of 4", plan.toString());
+    }
+
+    @Test
+    void paddingNeverExceedsChunkSize() {
+        var plan = new InListStrategy(true, 6).plan("id", values(5));
+
+        assertEquals(6, plan.getChunks().get(0).size());
+    }
+
+    @Test
+    void chunksAreViewsOfTheValues() {
+        var values = values(9);
+        var plan = new InListStrategy(true, 4).plan("id", values);
+
+        values.set(0, 100L);
+
+        assertEquals(100L, plan.getChunks().get(0).get(0));
+        assertEquals(List.of(9L, 9L, 9L, 9L), plan.getChunks().get(2));
+    }
+
+    @Test
+    void invalidChunkSize() {
+        assertThrows(QueryException.class, () -> new InListStrategy(true, 0));
+    }
+}
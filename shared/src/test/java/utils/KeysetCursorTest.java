@@ -0,0 +1,53 @@
+package utils;
+
+import io.github.robertomike.hefesto.actions.Order;
+import io.github.robertomike.hefesto.utils.KeysetCursor;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+    static class Event {
+        Long id;
+        Timestamp createdAt;
+        Date updatedAt;
+    }
+
+    @Test
+    void timestampKeepsNanos() {
+        var orders = List.of(new Order("createdAt"), new Order("id"));
+        var createdAt = Timestamp.valueOf("2024-01-01 10:00:00.123456789");
+
+        var cursor = KeysetCursor.encode(orders, List.of(createdAt, 1L));
+        var values = KeysetCursor.decode(cursor, orders, Event.class);
+
+        assertEquals(Timestamp.class, values.get(0).getClass());
+        assertEquals(createdAt, values.get(0));
+        assertEquals(1L, values.get(1));
+    }
+
+    @Test
+    void dateHoldingTimestampIsDecodedAsTimestamp() {
+        var orders = List.of(new Order("updatedAt"));
+        var updatedAt = Timestamp.valueOf("2024-01-01 10:00:00.5");
+
+        var values = KeysetCursor.decode(KeysetCursor.encode(orders, List.of(updatedAt)), orders, Event.class);
+
+        assertEquals(updatedAt, values.get(0));
+    }
+
+    @Test
+    void dateKeepsMillis() {
+        var orders = List.of(new Order("updatedAt"));
+        var updatedAt = new Date(1704103200123L);
+
+        var values = KeysetCursor.decode(KeysetCursor.encode(orders, List.of(updatedAt)), orders, Event.class);
+
+        assertEquals(Date.class, values.get(0).getClass());
+        assertEquals(updatedAt, values.get(0));
+    }
+}